@@ -0,0 +1,91 @@
+package net.pnyxter.actor.benchmarks;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import net.pnyxter.actor.system.ActorSystem;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the JMH command line options. Unless given, the
+ * results are written as JSON to {@value #DEFAULT_RESULT}, to be compared
+ * between runs.
+ *
+ * The forked JVMs load the jar of the benchmarks as weaving agent, as the
+ * actors of the benchmarks are woven on class loading. Without fork
+ * ({@code -f 0}) the JVM running the benchmarks must be started with the
+ * agent.
+ */
+public class Benchmarks {
+
+	private static final String DEFAULT_RESULT = "jmh-result.json";
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListWithParams() || cmd.shouldListProfilers() || cmd.shouldListResultFormats()) {
+			Main.main(args);
+			return;
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+		if (!cmd.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!cmd.getResult().hasValue()) {
+			options.result(DEFAULT_RESULT);
+		}
+
+		List<String> jvmArgs = new ArrayList<>();
+		if (cmd.getJvmArgsAppend().hasValue()) {
+			jvmArgs.addAll(cmd.getJvmArgsAppend().get());
+		}
+		File jar = jar();
+		if (jar != null) {
+			jvmArgs.add("-javaagent:" + jar.getAbsolutePath());
+		}
+		jvmArgs.add("--add-opens=java.base/java.lang=ALL-UNNAMED");
+		options.jvmArgsAppend(jvmArgs.toArray(new String[jvmArgs.size()]));
+
+		new Runner(options.build()).run();
+	}
+
+	/**
+	 * @return the jar the benchmarks are loaded from, or {@code null} if not
+	 *         run from a jar
+	 */
+	private static File jar() throws URISyntaxException {
+		File file = new File(Benchmarks.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		return file.isFile() && file.getName().endsWith(".jar") ? file : null;
+	}
+
+	/**
+	 * Create actors on an actor thread of a started system. The actors are
+	 * assigned by that thread, away from the benchmark thread, like actors
+	 * spawned by other actors.
+	 */
+	static <T> T onActorThread(ActorSystem system, final Callable<T> create) throws Exception {
+		final CompletableFuture<T> created = new CompletableFuture<>();
+		system.schedule(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					created.complete(create.call());
+				} catch (Exception e) {
+					created.completeExceptionally(e);
+				}
+			}
+		}, 0, TimeUnit.MILLISECONDS);
+		return created.get(10, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,59 @@
+package net.pnyxter.actor.benchmarks;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.pnyxter.actor.system.Histogram;
+
+/**
+ * End-to-end latency of the requests of a load test, recorded by the actor
+ * completing each request. Each thread records into a histogram of its own,
+ * so the completions are not serialized through a single actor.
+ */
+final class LatencyRecorder {
+
+	private final LongAdder completed = new LongAdder();
+
+	private final ConcurrentLinkedQueue<Histogram> histograms = new ConcurrentLinkedQueue<>();
+
+	private final ThreadLocal<Histogram> local = new ThreadLocal<Histogram>() {
+		@Override
+		protected Histogram initialValue() {
+			Histogram h = new Histogram();
+			histograms.add(h);
+			return h;
+		}
+	};
+
+	/**
+	 * Set while measuring, after the warmup.
+	 */
+	volatile boolean recording = false;
+
+	/**
+	 * @param started
+	 *            nano time the request was sent, or was due to be sent when
+	 *            driven at a rate
+	 */
+	void complete(long started) {
+		if (recording) {
+			local.get().record(System.nanoTime() - started);
+		}
+		completed.increment();
+	}
+
+	long getCompleted() {
+		return completed.sum();
+	}
+
+	/**
+	 * Latencies recorded by all threads. Taken after recording is stopped.
+	 */
+	Histogram getLatency() {
+		Histogram total = new Histogram();
+		for (Histogram h : histograms) {
+			total.add(h);
+		}
+		return total;
+	}
+}
@@ -0,0 +1,300 @@
+package net.pnyxter.actor.benchmarks;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import net.pnyxter.actor.system.ActorMetrics;
+import net.pnyxter.actor.system.ActorSystem;
+import net.pnyxter.actor.system.Histogram;
+
+/**
+ * Load test of a whole actor system: drives one of the topologies of
+ * {@link LoadTopology} for a fixed time with each thread count of a sweep,
+ * and reports throughput, latency percentiles, allocation and GC.
+ *
+ * <pre>
+ * java -javaagent:benchmarks.jar -cp benchmarks.jar net.pnyxter.actor.benchmarks.LoadTest \
+ *     --topology mesh --threads 1..64 --rate 200000 --duration 30 --csv mesh.csv
+ * </pre>
+ *
+ * Requests are sent by the main thread, at a target rate or as fast as the
+ * in-flight limit allows. At a rate, the latency is measured from the time
+ * each request was due, so a stalled system is not hidden by the driver
+ * waiting for it.
+ */
+public class LoadTest {
+
+	private String topology = "pipeline";
+	private int[] threads = { 1, 2, 4, 8 };
+	private long rate = 0;
+	private int inflight = 10000;
+	private int warmupSeconds = 5;
+	private int durationSeconds = 10;
+	private boolean pinThreads = false;
+	private boolean threadChannels = false;
+	private String csv = null;
+	private final LoadTopology.Shape shape = new LoadTopology.Shape();
+
+	private static final String HEADER = "topology,threads,requests_per_s,p50_us,p90_us,p99_us,p999_us,max_us,alloc_mb_per_s,bytes_per_request,gc_count,gc_ms,assigned,stolen";
+
+	public static void main(String[] args) throws Exception {
+		LoadTest test = new LoadTest();
+		try {
+			test.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			usage();
+			System.exit(1);
+		}
+		test.run();
+	}
+
+	private static void usage() {
+		System.err.println("Options:");
+		System.err.println("  --topology pipeline|tree|mesh|skew  (pipeline)");
+		System.err.println("  --threads 1,2,4 or 1..64            actor threads of each run, a list or doubling (1,2,4,8)");
+		System.err.println("  --rate n                            requests per second, 0 for flat out (0)");
+		System.err.println("  --inflight n                        max requests in flight (10000)");
+		System.err.println("  --warmup s, --duration s            seconds of each run (5, 10)");
+		System.err.println("  --pin                               pin actor threads to CPUs");
+		System.err.println("  --channels                          channels between actor threads");
+		System.err.println("  --csv file                          append results to file");
+		System.err.println("  --width n                           pipelines or tree roots, 0 for one per thread (0)");
+		System.err.println("  --stages n                          pipeline stages (8)");
+		System.err.println("  --depth n, --fanout n               tree shape (4, 2)");
+		System.err.println("  --actors n                          mesh nodes or skew keys (1024)");
+		System.err.println("  --hops n                            mesh hops per request (4)");
+		System.err.println("  --skew s                            Zipf exponent of the keys (1.0)");
+		System.err.println("  --work n                            CPU tokens burnt per handler (0)");
+	}
+
+	private void parse(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+			if (option.equals("--help")) {
+				usage();
+				System.exit(0);
+			}
+			if (option.equals("--pin")) {
+				pinThreads = true;
+				continue;
+			}
+			if (option.equals("--channels")) {
+				threadChannels = true;
+				continue;
+			}
+			if (i + 1 == args.length) {
+				throw new IllegalArgumentException("Missing value of " + option);
+			}
+			String value = args[++i];
+			switch (option) {
+			case "--topology":
+				topology = value;
+				break;
+			case "--threads":
+				threads = parseThreads(value);
+				break;
+			case "--rate":
+				rate = Long.parseLong(value);
+				break;
+			case "--inflight":
+				inflight = Integer.parseInt(value);
+				break;
+			case "--warmup":
+				warmupSeconds = Integer.parseInt(value);
+				break;
+			case "--duration":
+				durationSeconds = Integer.parseInt(value);
+				break;
+			case "--csv":
+				csv = value;
+				break;
+			case "--width":
+				shape.width = Integer.parseInt(value);
+				break;
+			case "--stages":
+				shape.stages = Integer.parseInt(value);
+				break;
+			case "--depth":
+				shape.depth = Integer.parseInt(value);
+				break;
+			case "--fanout":
+				shape.fanout = Integer.parseInt(value);
+				break;
+			case "--actors":
+				shape.actors = Integer.parseInt(value);
+				break;
+			case "--hops":
+				shape.hops = Integer.parseInt(value);
+				break;
+			case "--skew":
+				shape.skew = Double.parseDouble(value);
+				break;
+			case "--work":
+				shape.work = Integer.parseInt(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + option);
+			}
+		}
+	}
+
+	/**
+	 * @param value
+	 *            comma separated counts, or {@code from..to} doubling
+	 */
+	static int[] parseThreads(String value) {
+		int range = value.indexOf("..");
+		if (range < 0) {
+			String[] counts = value.split(",");
+			int[] parsed = new int[counts.length];
+			for (int i = 0; i < counts.length; i++) {
+				parsed[i] = Integer.parseInt(counts[i].trim());
+			}
+			return parsed;
+		}
+		int from = Integer.parseInt(value.substring(0, range));
+		int to = Integer.parseInt(value.substring(range + 2));
+		if (from < 1 || to < from) {
+			throw new IllegalArgumentException("Bad thread range: " + value);
+		}
+		List<Integer> counts = new ArrayList<>();
+		for (int n = from; n < to; n *= 2) {
+			counts.add(n);
+		}
+		counts.add(to);
+		int[] parsed = new int[counts.size()];
+		for (int i = 0; i < parsed.length; i++) {
+			parsed[i] = counts.get(i);
+		}
+		return parsed;
+	}
+
+	private void run() throws Exception {
+		System.out.println(HEADER);
+		for (int t : threads) {
+			String line = run(t);
+			System.out.println(line);
+			if (csv != null) {
+				append(line);
+			}
+		}
+	}
+
+	private void append(String line) throws IOException {
+		boolean exists = new File(csv).length() > 0;
+		try (PrintWriter out = new PrintWriter(new FileWriter(csv, true))) {
+			if (!exists) {
+				out.println(HEADER);
+			}
+			out.println(line);
+		}
+	}
+
+	/**
+	 * One run with the given number of actor threads, on a new actor system.
+	 *
+	 * @return the results as a CSV line
+	 */
+	private String run(int threadCount) throws Exception {
+		ActorSystem system = new ActorSystem("load-" + threadCount);
+		system.setPinThreads(pinThreads);
+		system.setThreadChannels(threadChannels);
+		system.start(threadCount);
+		try {
+			LatencyRecorder recorder = new LatencyRecorder();
+			LoadTopology load = LoadTopology.create(topology, system, threadCount, shape, recorder);
+			SplittableRandom random = new SplittableRandom(threadCount);
+
+			drive(load, recorder, random, TimeUnit.SECONDS.toNanos(warmupSeconds));
+
+			Usage before = new Usage(system);
+			long completedBefore = recorder.getCompleted();
+			recorder.recording = true;
+			long nanos = drive(load, recorder, random, TimeUnit.SECONDS.toNanos(durationSeconds));
+			recorder.recording = false;
+			long completed = recorder.getCompleted() - completedBefore;
+			Usage after = new Usage(system);
+
+			double seconds = nanos / 1e9;
+			Histogram latency = recorder.getLatency();
+			long allocated = after.allocatedBytes - before.allocatedBytes;
+			return String.format(Locale.ROOT, "%s,%d,%.0f,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%d,%d,%d,%d,%d", topology, threadCount, completed / seconds, latency.getMedian() / 1e3, latency.getP90() / 1e3, latency.getP99() / 1e3, latency.getP999() / 1e3, latency.getMax() / 1e3, allocated / seconds / (1 << 20), completed == 0 ? 0 : allocated / completed, after.gcCount - before.gcCount, after.gcMillis - before.gcMillis, after.assigned - before.assigned, after.stolen - before.stolen);
+		} finally {
+			system.shutdown();
+		}
+	}
+
+	/**
+	 * Send requests for the given time.
+	 *
+	 * @return nanos elapsed
+	 */
+	private long drive(LoadTopology load, LatencyRecorder recorder, SplittableRandom random, long duration) {
+		long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+		long start = System.nanoTime();
+		long end = start + duration;
+		long due = start;
+		long sent = recorder.getCompleted();
+		for (;;) {
+			long now = System.nanoTime();
+			if (now - end >= 0) {
+				return now - start;
+			}
+			if (sent - recorder.getCompleted() >= inflight) {
+				Thread.onSpinWait();
+				continue;
+			}
+			long started = now;
+			if (interval > 0) {
+				if (now - due < 0) {
+					if (due - now > 50000) {
+						LockSupport.parkNanos(due - now - 50000);
+					}
+					continue;
+				}
+				started = due;
+				due += interval;
+			}
+			load.request(started, random.nextLong());
+			sent++;
+		}
+	}
+
+	/**
+	 * Allocation, GC and dispatcher counters at a point in time.
+	 */
+	private static final class Usage {
+		final long allocatedBytes;
+		final long gcCount;
+		final long gcMillis;
+		final long assigned;
+		final long stolen;
+
+		Usage(ActorSystem system) {
+			java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			allocatedBytes = threads instanceof com.sun.management.ThreadMXBean ? ((com.sun.management.ThreadMXBean) threads).getTotalThreadAllocatedBytes() : -1;
+			long count = 0;
+			long millis = 0;
+			for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				count += Math.max(0, gc.getCollectionCount());
+				millis += Math.max(0, gc.getCollectionTime());
+			}
+			gcCount = count;
+			gcMillis = millis;
+			ActorMetrics metrics = system.getMetrics();
+			assigned = metrics.getAssignedCount();
+			stolen = metrics.getStolenCount();
+		}
+	}
+}
@@ -0,0 +1,340 @@
+package net.pnyxter.actor.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import net.pnyxter.actor.Actor;
+import net.pnyxter.actor.Inbox;
+import net.pnyxter.actor.system.ActorSystem;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Actor topologies driven by {@link LoadTest}. A request enters the topology
+ * by {@link #request(long, long)} and is completed to the
+ * {@link LatencyRecorder} by the actor handling its last hop. Each handler
+ * burns {@code work} tokens of CPU, see {@link Blackhole#consumeCPU(long)}.
+ *
+ * The actors are created on the actor threads and placed by the dispatcher.
+ */
+abstract class LoadTopology {
+
+	/**
+	 * @param started
+	 *            nano time the request was, or was due to be, sent
+	 * @param key
+	 *            random key of the request
+	 */
+	abstract void request(long started, long key);
+
+	/**
+	 * Parameters of the topologies, as given to {@link LoadTest}.
+	 */
+	static final class Shape {
+		/**
+		 * Parallel entries to pipelines and trees, zero for one per thread.
+		 */
+		int width = 0;
+		int stages = 8;
+		int depth = 4;
+		int fanout = 2;
+		int actors = 1024;
+		int hops = 4;
+		double skew = 1.0;
+		int work = 0;
+	}
+
+	static LoadTopology create(String name, ActorSystem system, int threads, Shape shape, LatencyRecorder recorder) throws Exception {
+		int width = shape.width > 0 ? shape.width : threads;
+		switch (name) {
+		case "pipeline":
+			return new Pipelines(system, width, shape, recorder);
+		case "tree":
+			return new Trees(system, width, shape, recorder);
+		case "mesh":
+			return new Mesh(system, threads, shape, recorder);
+		case "skew":
+			return new Skew(system, threads, shape, recorder);
+		default:
+			throw new IllegalArgumentException("Unknown topology: " + name);
+		}
+	}
+
+	/**
+	 * Spread the creation of actors over the actor threads, a chunk per
+	 * thread.
+	 */
+	private static <T> void createChunked(ActorSystem system, int threads, final T[] actors, final ActorFactory<T> factory) throws Exception {
+		int chunk = (actors.length + threads - 1) / threads;
+		for (int from = 0; from < actors.length; from += chunk) {
+			final int start = from;
+			final int end = Math.min(actors.length, from + chunk);
+			Benchmarks.onActorThread(system, new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int i = start; i < end; i++) {
+						actors[i] = factory.create(i);
+					}
+					return null;
+				}
+			});
+		}
+	}
+
+	private interface ActorFactory<T> {
+		T create(int index);
+	}
+
+	// Pipeline: each request passes all stages of one of the pipelines
+
+	@Actor
+	public static class Stage {
+		private final Stage next;
+		private final LatencyRecorder recorder;
+		private final int work;
+
+		Stage(Stage next, LatencyRecorder recorder, int work) {
+			this.next = next;
+			this.recorder = recorder;
+			this.work = work;
+		}
+
+		@Inbox
+		public void handle(long started) {
+			Blackhole.consumeCPU(work);
+			if (next != null) {
+				next.handle(started);
+			} else {
+				recorder.complete(started);
+			}
+		}
+	}
+
+	private static final class Pipelines extends LoadTopology {
+		private final Stage[] entries;
+
+		Pipelines(ActorSystem system, int width, final Shape shape, final LatencyRecorder recorder) throws Exception {
+			entries = new Stage[width];
+			for (int p = 0; p < width; p++) {
+				Stage next = null;
+				// Last stage first, each on the next actor thread
+				for (int s = 0; s < shape.stages; s++) {
+					final Stage following = next;
+					next = Benchmarks.onActorThread(system, new Callable<Stage>() {
+						@Override
+						public Stage call() {
+							return new Stage(following, recorder, shape.work);
+						}
+					});
+				}
+				entries[p] = next;
+			}
+		}
+
+		@Override
+		void request(long started, long key) {
+			entries[(int) ((key >>> 1) % entries.length)].handle(started);
+		}
+	}
+
+	// Tree: each request spawns a tree of new actors, like FibonacciProblem
+
+	@Actor
+	public static class TreeRoot {
+		private final Shape shape;
+		private final LatencyRecorder recorder;
+
+		TreeRoot(Shape shape, LatencyRecorder recorder) {
+			this.shape = shape;
+			this.recorder = recorder;
+		}
+
+		@Inbox
+		public void request(long started) {
+			new TreeNode(null, shape, shape.depth, recorder, started).process();
+		}
+	}
+
+	@Actor
+	public static class TreeNode {
+		private final TreeNode parent;
+		private final Shape shape;
+		private final int depth;
+		private final LatencyRecorder recorder;
+		private final long started;
+		private int pending = 0;
+
+		TreeNode(TreeNode parent, Shape shape, int depth, LatencyRecorder recorder, long started) {
+			this.parent = parent;
+			this.shape = shape;
+			this.depth = depth;
+			this.recorder = recorder;
+			this.started = started;
+		}
+
+		@Inbox
+		public void process() {
+			Blackhole.consumeCPU(shape.work);
+			if (depth == 0) {
+				finish();
+				return;
+			}
+			pending = shape.fanout;
+			for (int i = 0; i < shape.fanout; i++) {
+				new TreeNode(this, shape, depth - 1, recorder, started).process();
+			}
+		}
+
+		@Inbox
+		public void childDone() {
+			if (--pending == 0) {
+				finish();
+			}
+		}
+
+		private void finish() {
+			if (parent != null) {
+				parent.childDone();
+			} else {
+				recorder.complete(started);
+			}
+		}
+	}
+
+	private static final class Trees extends LoadTopology {
+		private final TreeRoot[] roots;
+
+		Trees(ActorSystem system, int width, final Shape shape, final LatencyRecorder recorder) throws Exception {
+			roots = new TreeRoot[width];
+			for (int i = 0; i < width; i++) {
+				roots[i] = Benchmarks.onActorThread(system, new Callable<TreeRoot>() {
+					@Override
+					public TreeRoot call() {
+						return new TreeRoot(shape, recorder);
+					}
+				});
+			}
+		}
+
+		@Override
+		void request(long started, long key) {
+			roots[(int) ((key >>> 1) % roots.length)].request(started);
+		}
+	}
+
+	// Mesh: each request hops between actors picked by its key
+
+	@Actor
+	public static class MeshNode {
+		/**
+		 * Filled before the first request.
+		 */
+		private final MeshNode[] peers;
+		private final LatencyRecorder recorder;
+		private final int work;
+
+		MeshNode(MeshNode[] peers, LatencyRecorder recorder, int work) {
+			this.peers = peers;
+			this.recorder = recorder;
+			this.work = work;
+		}
+
+		@Inbox
+		public void hop(long started, long key, int remaining) {
+			Blackhole.consumeCPU(work);
+			if (remaining == 0) {
+				recorder.complete(started);
+			} else {
+				peers[peer(key, remaining, peers.length)].hop(started, key, remaining - 1);
+			}
+		}
+	}
+
+	static int peer(long key, int hop, int peers) {
+		long h = (key + hop) * 0x9E3779B97F4A7C15L;
+		return (int) ((h >>> 1) % peers);
+	}
+
+	private static final class Mesh extends LoadTopology {
+		private final MeshNode[] nodes;
+		private final int hops;
+
+		Mesh(ActorSystem system, int threads, final Shape shape, final LatencyRecorder recorder) throws Exception {
+			hops = shape.hops;
+			nodes = new MeshNode[shape.actors];
+			final MeshNode[] peers = new MeshNode[shape.actors];
+			createChunked(system, threads, nodes, new ActorFactory<MeshNode>() {
+				@Override
+				public MeshNode create(int index) {
+					return new MeshNode(peers, recorder, shape.work);
+				}
+			});
+			// Visible to the nodes through the sends of the requests
+			System.arraycopy(nodes, 0, peers, 0, nodes.length);
+		}
+
+		@Override
+		void request(long started, long key) {
+			nodes[peer(key, hops + 1, nodes.length)].hop(started, key, hops);
+		}
+	}
+
+	// Skew: each request goes to one key actor, a few keys taking most
+
+	@Actor
+	public static class KeyActor {
+		private final LatencyRecorder recorder;
+		private final int work;
+
+		KeyActor(LatencyRecorder recorder, int work) {
+			this.recorder = recorder;
+			this.work = work;
+		}
+
+		@Inbox
+		public void handle(long started) {
+			Blackhole.consumeCPU(work);
+			recorder.complete(started);
+		}
+	}
+
+	private static final class Skew extends LoadTopology {
+		private final KeyActor[] keys;
+
+		/**
+		 * Cumulative Zipf distribution over the keys, scaled to
+		 * {@link Long#MAX_VALUE}.
+		 */
+		private final long[] cumulative;
+
+		Skew(ActorSystem system, int threads, final Shape shape, final LatencyRecorder recorder) throws Exception {
+			keys = new KeyActor[shape.actors];
+			createChunked(system, threads, keys, new ActorFactory<KeyActor>() {
+				@Override
+				public KeyActor create(int index) {
+					return new KeyActor(recorder, shape.work);
+				}
+			});
+
+			double[] weights = new double[keys.length];
+			double total = 0;
+			for (int i = 0; i < keys.length; i++) {
+				weights[i] = 1 / Math.pow(i + 1, shape.skew);
+				total += weights[i];
+			}
+			cumulative = new long[keys.length];
+			double sum = 0;
+			for (int i = 0; i < keys.length; i++) {
+				sum += weights[i];
+				cumulative[i] = (long) (sum / total * Long.MAX_VALUE);
+			}
+			cumulative[keys.length - 1] = Long.MAX_VALUE;
+		}
+
+		@Override
+		void request(long started, long key) {
+			int i = Arrays.binarySearch(cumulative, key >>> 1);
+			keys[i >= 0 ? i : -i - 1].handle(started);
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package net.pnyxter.actor.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.pnyxter.multicore.JdkSimpleQueue;
+import net.pnyxter.multicore.MpscArrayQueue;
+import net.pnyxter.multicore.MpscLinkedQueue;
+import net.pnyxter.multicore.MulticoreQueue;
+import net.pnyxter.multicore.MulticoreQueue.Follower;
+import net.pnyxter.multicore.SynchronizedBroadcastQueue;
+import net.pnyxter.multicore.UnsafeBroadcastQueue;
+import net.pnyxter.multicore.UnsafeLinkedQueue;
+import net.pnyxter.multicore.VarHandleBroadcastQueue;
+import net.pnyxter.multicore.VarHandleLinkedQueue;
+import net.pnyxter.multicore.VolatileBroadcastQueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Control;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Each {@link MulticoreQueue} with one, two and four producers and a single
+ * follower. Other producer counts are run with {@code -tg <producers>,1} on
+ * the {@code p1} group.
+ *
+ * Most queues are unbounded, so producers wait while the follower is more
+ * than {@value #MAX_BACKLOG} messages behind. Throughput is the sustained
+ * rate, not the rate of filling memory.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MulticoreQueueBenchmark {
+
+	private static final Integer MESSAGE = 1;
+
+	private static final long MAX_BACKLOG = 1 << 16;
+
+	/**
+	 * Producers and follower check the backlog once every this many
+	 * messages, plus one.
+	 */
+	private static final long CHECK_MASK = 0x3ff;
+
+	@State(Scope.Group)
+	public static class Queue {
+		@Param({ "JdkSimpleQueue", "MpscLinkedQueue", "MpscArrayQueue", "UnsafeLinkedQueue", "VarHandleLinkedQueue", "SynchronizedBroadcastQueue", "UnsafeBroadcastQueue", "VarHandleBroadcastQueue", "VolatileBroadcastQueue" })
+		String type;
+
+		MulticoreQueue<Integer> queue;
+
+		/**
+		 * Messages polled, published by the follower.
+		 */
+		volatile long polled;
+
+		@Setup(Level.Iteration)
+		public void setup() {
+			queue = create(type);
+			polled = 0;
+		}
+
+		private static MulticoreQueue<Integer> create(String type) {
+			switch (type) {
+			case "JdkSimpleQueue":
+				return new JdkSimpleQueue<>();
+			case "MpscLinkedQueue":
+				return new MpscLinkedQueue<>();
+			case "MpscArrayQueue":
+				// Room for the backlog and the checking interval of producers
+				return new MpscArrayQueue<>((int) MAX_BACKLOG * 2);
+			case "UnsafeLinkedQueue":
+				return new UnsafeLinkedQueue<>();
+			case "VarHandleLinkedQueue":
+				return new VarHandleLinkedQueue<>();
+			case "SynchronizedBroadcastQueue":
+				return new SynchronizedBroadcastQueue<>();
+			case "UnsafeBroadcastQueue":
+				return new UnsafeBroadcastQueue<>();
+			case "VarHandleBroadcastQueue":
+				return new VarHandleBroadcastQueue<>();
+			case "VolatileBroadcastQueue":
+				return new VolatileBroadcastQueue<>();
+			default:
+				throw new IllegalArgumentException("Unknown queue: " + type);
+			}
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Producer {
+		int producers;
+		long added;
+
+		@Setup(Level.Iteration)
+		public void setup(ThreadParams params) {
+			producers = params.getSubgroupThreadCount();
+			added = 0;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Consumer {
+		Follower<Integer> follower;
+		long polled;
+
+		@Setup(Level.Iteration)
+		public void setup(Queue q) {
+			follower = q.queue.follower();
+			polled = 0;
+		}
+	}
+
+	private static boolean add(Queue q, Producer p, Control control) {
+		if ((++p.added & CHECK_MASK) == 0) {
+			// Approximated from the own count, as producers add at about the
+			// same rate
+			while (p.added * p.producers - q.polled > MAX_BACKLOG && !control.stopMeasurement) {
+				Thread.yield();
+			}
+		}
+		boolean added;
+		// Bounded queues refuse when full
+		while (!(added = q.queue.add(MESSAGE)) && !control.stopMeasurement) {
+			Thread.yield();
+		}
+		return added;
+	}
+
+	/**
+	 * Poll until a message is received, so each operation is a message.
+	 */
+	private static Integer poll(Queue q, Consumer c, Control control) {
+		Integer m;
+		while ((m = c.follower.poll()) == null && !control.stopMeasurement) {
+			Thread.onSpinWait();
+		}
+		if ((++c.polled & CHECK_MASK) == 0) {
+			q.polled = c.polled;
+		}
+		return m;
+	}
+
+	@Benchmark
+	@Group("p1")
+	@GroupThreads(1)
+	public boolean add1(Queue q, Producer p, Control control) {
+		return add(q, p, control);
+	}
+
+	@Benchmark
+	@Group("p1")
+	@GroupThreads(1)
+	public Integer poll1(Queue q, Consumer c, Control control) {
+		return poll(q, c, control);
+	}
+
+	@Benchmark
+	@Group("p2")
+	@GroupThreads(2)
+	public boolean add2(Queue q, Producer p, Control control) {
+		return add(q, p, control);
+	}
+
+	@Benchmark
+	@Group("p2")
+	@GroupThreads(1)
+	public Integer poll2(Queue q, Consumer c, Control control) {
+		return poll(q, c, control);
+	}
+
+	@Benchmark
+	@Group("p4")
+	@GroupThreads(4)
+	public boolean add4(Queue q, Producer p, Control control) {
+		return add(q, p, control);
+	}
+
+	@Benchmark
+	@Group("p4")
+	@GroupThreads(1)
+	public Integer poll4(Queue q, Consumer c, Control control) {
+		return poll(q, c, control);
+	}
+}
@@ -0,0 +1,125 @@
+package net.pnyxter.actor.benchmarks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import net.pnyxter.actor.Actor;
+import net.pnyxter.actor.Inbox;
+import net.pnyxter.actor.MailboxOverflow;
+import net.pnyxter.actor.system.ActorSystem;
+import net.pnyxter.actor.system.ActorSystem.ProcessType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sends to an actor on the sending thread, executed in batches by the same
+ * thread, and to an actor on an actor thread, with a bounded mailbox
+ * blocking the senders when the actor falls behind.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SendBenchmark {
+
+	private static final int BATCH = 100;
+
+	@Actor
+	public static class Counter {
+		long count = 0;
+
+		@Inbox
+		public void increase() {
+			count++;
+		}
+	}
+
+	/**
+	 * Actor assigned to the benchmark thread, in a system without actor
+	 * threads.
+	 */
+	@State(Scope.Thread)
+	public static class Local {
+		ActorSystem system;
+		Counter counter;
+
+		@Setup
+		public void setup() throws InterruptedException {
+			system = new ActorSystem("local");
+			ActorSystem.setCurrent(system);
+			counter = new Counter();
+			counter.increase();
+			system.process(ProcessType.UNTIL_NO_WORK);
+		}
+
+		@TearDown
+		public void tearDown() {
+			ActorSystem.setCurrent(null);
+			system.shutdown();
+		}
+	}
+
+	/**
+	 * Actor assigned to the only actor thread of a system.
+	 */
+	@State(Scope.Benchmark)
+	public static class Remote {
+		@Param("4096")
+		int capacity;
+
+		ActorSystem system;
+		Counter counter;
+
+		@Setup
+		public void setup() throws Exception {
+			system = new ActorSystem("remote");
+			system.setDefaultMailbox(capacity, MailboxOverflow.BLOCK);
+			system.start(1);
+			counter = Benchmarks.onActorThread(system, new Callable<Counter>() {
+				@Override
+				public Counter call() {
+					return new Counter();
+				}
+			});
+		}
+
+		@TearDown
+		public void tearDown() {
+			system.shutdown();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int local(Local s) {
+		for (int i = 0; i < BATCH; i++) {
+			s.counter.increase();
+		}
+		return s.system.processBatch(BATCH, 0);
+	}
+
+	@Benchmark
+	public void crossThread(Remote s) {
+		s.counter.increase();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void crossThreadContended(Remote s) {
+		s.counter.increase();
+	}
+}
@@ -0,0 +1,152 @@
+package net.pnyxter.actor.benchmarks;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import net.pnyxter.actor.Actor;
+import net.pnyxter.actor.Inbox;
+import net.pnyxter.actor.Response;
+import net.pnyxter.actor.system.ActorSystem;
+import net.pnyxter.actor.system.ActorSystem.ProcessType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Actors created, assigned and sent their first action: one by one on the
+ * benchmark thread, and as the recursive Fibonacci computation spawning two
+ * actors per call across the actor threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpawnBenchmark {
+
+	private static final int BATCH = 100;
+
+	/**
+	 * Fibonacci number computed, and the number of actors spawned computing
+	 * it.
+	 */
+	private static final int FIBONACCI_N = 20;
+	private static final int FIBONACCI_ACTORS = 21891;
+
+	@Actor
+	public static class Child {
+		long count = 0;
+
+		@Inbox
+		public void increase() {
+			count++;
+		}
+	}
+
+	public interface Sum {
+		void sum(long sum);
+	}
+
+	@Actor
+	public static class Fibonacci implements Sum {
+		private final long n;
+		private final Sum callback;
+		private long sum = 0;
+		private int expected = 2;
+
+		public Fibonacci(long n, Sum callback) {
+			this.n = n;
+			this.callback = callback;
+		}
+
+		@Inbox
+		public void process() {
+			if (n <= 1) {
+				callback.sum(n);
+			} else {
+				new Fibonacci(n - 1, this).process();
+				new Fibonacci(n - 2, this).process();
+			}
+		}
+
+		@Override
+		@Inbox
+		public void sum(long sum) {
+			this.sum += sum;
+			if (--expected == 0) {
+				callback.sum(this.sum);
+			}
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Local {
+		ActorSystem system;
+
+		@Setup
+		public void setup() {
+			system = new ActorSystem("spawn");
+			ActorSystem.setCurrent(system);
+		}
+
+		@TearDown
+		public void tearDown() {
+			ActorSystem.setCurrent(null);
+			system.shutdown();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Started {
+		@Param({ "2", "4" })
+		int threads;
+
+		ActorSystem system;
+
+		@Setup
+		public void setup() {
+			system = new ActorSystem("fibonacci");
+			system.start(threads);
+			ActorSystem.setCurrent(system);
+		}
+
+		@TearDown
+		public void tearDown() {
+			ActorSystem.setCurrent(null);
+			system.shutdown();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void local(Local s) throws InterruptedException {
+		for (int i = 0; i < BATCH; i++) {
+			new Child().increase();
+		}
+		s.system.process(ProcessType.UNTIL_NO_WORK);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIBONACCI_ACTORS)
+	public long fibonacci(Started s) throws InterruptedException, ExecutionException {
+		final Response<Long> result = Response.create();
+		new Fibonacci(FIBONACCI_N, new Sum() {
+			@Override
+			public void sum(long sum) {
+				result.complete(sum);
+			}
+		}).process();
+		return result.get();
+	}
+}
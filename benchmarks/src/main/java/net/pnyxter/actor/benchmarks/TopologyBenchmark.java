@@ -0,0 +1,173 @@
+package net.pnyxter.actor.benchmarks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import net.pnyxter.actor.Actor;
+import net.pnyxter.actor.Inbox;
+import net.pnyxter.actor.Response;
+import net.pnyxter.actor.system.ActorSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Messages between actors on the actor threads: round trips between two
+ * actors, and a coordinator scattering tasks to workers and gathering their
+ * replies. The actors are placed on the threads by the dispatcher.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopologyBenchmark {
+
+	private static final int ROUNDS = 1000;
+	private static final int TASKS = 1000;
+
+	@Actor
+	public static class Pong {
+		private final Ping ping;
+
+		Pong(Ping ping) {
+			this.ping = ping;
+		}
+
+		@Inbox
+		public void ping(int remaining) {
+			ping.pong(remaining);
+		}
+	}
+
+	@Actor
+	public static class Ping {
+		private final Pong pong = new Pong(this);
+		private Response<Void> done = null;
+
+		@Inbox
+		public void start(int rounds, Response<Void> done) {
+			this.done = done;
+			pong.ping(rounds);
+		}
+
+		@Inbox
+		public void pong(int remaining) {
+			if (remaining > 1) {
+				pong.ping(remaining - 1);
+			} else {
+				done.complete(null);
+				done = null;
+			}
+		}
+	}
+
+	@Actor
+	public static class Worker {
+		private final Coordinator coordinator;
+
+		Worker(Coordinator coordinator) {
+			this.coordinator = coordinator;
+		}
+
+		@Inbox
+		public void work(int task) {
+			coordinator.done(task);
+		}
+	}
+
+	@Actor
+	public static class Coordinator {
+		private final Worker[] workers;
+		private int pending = 0;
+		private Response<Void> finished = null;
+
+		Coordinator(int workers) {
+			this.workers = new Worker[workers];
+			for (int i = 0; i < workers; i++) {
+				this.workers[i] = new Worker(this);
+			}
+		}
+
+		@Inbox
+		public void scatter(int tasks, Response<Void> finished) {
+			this.finished = finished;
+			pending = tasks;
+			for (int i = 0; i < tasks; i++) {
+				workers[i % workers.length].work(i);
+			}
+		}
+
+		@Inbox
+		public void done(int task) {
+			if (--pending == 0) {
+				finished.complete(null);
+				finished = null;
+			}
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Topology {
+		@Param({ "2", "4" })
+		int threads;
+
+		@Param("8")
+		int workers;
+
+		ActorSystem system;
+		Ping ping;
+		Coordinator coordinator;
+
+		@Setup
+		public void setup() throws Exception {
+			system = new ActorSystem("topology");
+			system.start(threads);
+			ping = Benchmarks.onActorThread(system, new Callable<Ping>() {
+				@Override
+				public Ping call() {
+					return new Ping();
+				}
+			});
+			coordinator = Benchmarks.onActorThread(system, new Callable<Coordinator>() {
+				@Override
+				public Coordinator call() {
+					return new Coordinator(workers);
+				}
+			});
+		}
+
+		@TearDown
+		public void tearDown() {
+			system.shutdown();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROUNDS)
+	public void pingPong(Topology s) throws InterruptedException, ExecutionException {
+		Response<Void> done = Response.create();
+		s.ping.start(ROUNDS, done);
+		done.get();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TASKS)
+	public void fanOutFanIn(Topology s) throws InterruptedException, ExecutionException {
+		Response<Void> finished = Response.create();
+		s.coordinator.scatter(TASKS, finished);
+		finished.get();
+	}
+}
@@ -11,4 +11,20 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 public @interface Actor {
 
+	/**
+	 * Max number of actions waiting in the mailbox of each actor of the class.
+	 * Zero for unbounded and negative for the default of the actor system.
+	 * 
+	 * The bound is enforced for concurrent senders. Priority actions, an actor
+	 * sending to itself under {@link MailboxOverflow#BLOCK} and the newest
+	 * action under {@link MailboxOverflow#DROP_OLDEST}, until the oldest is
+	 * dropped, pass it.
+	 */
+	int mailboxCapacity() default -1;
+
+	/**
+	 * What to do when the mailbox is full. Only used when
+	 * {@link #mailboxCapacity()} is set.
+	 */
+	MailboxOverflow overflow() default MailboxOverflow.BLOCK;
 }
@@ -0,0 +1,317 @@
+package net.pnyxter.actor;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import net.pnyxter.actor.dispatcher.ActorQueue;
+import net.pnyxter.actor.dispatcher.ActorRef;
+import net.pnyxter.actor.system.ActorSystem;
+
+/**
+ * Future returned by an {@link Inbox} method. Completed with the value the
+ * handler passes to {@link ActorUtil#returnFuture(Object)} once the action is
+ * executed, or with the exception thrown by the handler.
+ *
+ * A listener added while an actor is executing is run as a priority message to
+ * that actor, so it may access the actor state without blocking any thread and
+ * is neither blocked nor dropped by a full mailbox. A listener added elsewhere
+ * is run by the thread completing the future, or directly if already
+ * completed. A listener that throws, or can not be sent to its actor, is
+ * reported to the uncaught exception handler of the completing thread and the
+ * other listeners are still run.
+ */
+public class ActorFuture<V> implements Future<V> {
+
+	/**
+	 * Called with the value, or with the failure if the handler threw.
+	 */
+	public interface Listener<V> {
+		void completed(V value, Throwable failure);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<ActorFuture> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(ActorFuture.class, "state");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<ActorFuture, Node> waitersUpdater = AtomicReferenceFieldUpdater.newUpdater(ActorFuture.class, Node.class, "waiters");
+
+	private static final int PENDING = 0;
+	private static final int COMPLETING = 1;
+	private static final int DONE = 2;
+
+	/**
+	 * Listener, or blocked thread, waiting for completion.
+	 */
+	private static final class Node {
+		final Listener<Object> listener;
+		final ActorQueue actor;
+		final Thread thread;
+		Node next = null;
+
+		Node(Listener<Object> listener, ActorQueue actor, Thread thread) {
+			this.listener = listener;
+			this.actor = actor;
+			this.thread = thread;
+		}
+	}
+
+	/**
+	 * Marks the waiters as run, set on completion.
+	 */
+	private static final Node COMPLETED = new Node(null, null, null);
+
+	/**
+	 * Listener run as an action on the actor that added it.
+	 */
+	private static final class ListenerAction extends ActorQueue.Action {
+		private final ActorQueue actor;
+		private final Listener<Object> listener;
+		private final Object value;
+		private final Throwable failure;
+
+		ListenerAction(ActorQueue actor, Listener<Object> listener, Object value, Throwable failure) {
+			this.actor = actor;
+			this.listener = listener;
+			this.value = value;
+			this.failure = failure;
+		}
+
+		@Override
+		public ActorRef getActorRef() {
+			return actor.getActor();
+		}
+
+		@Override
+		public void execute() {
+			listener.completed(value, failure);
+		}
+	}
+
+	private volatile int state = PENDING;
+
+	/**
+	 * Written before the waiters are marked completed.
+	 */
+	private V value = null;
+	private Throwable failure = null;
+
+	private volatile Node waiters = null;
+
+	public static <V> ActorFuture<V> completed(V value) {
+		ActorFuture<V> future = new ActorFuture<>();
+		future.complete(value);
+		return future;
+	}
+
+	/**
+	 * @return {@code false} if already completed
+	 */
+	public boolean complete(V value) {
+		return complete(value, null);
+	}
+
+	/**
+	 * @return {@code false} if already completed
+	 */
+	public boolean fail(Throwable failure) {
+		if (failure == null) {
+			throw new NullPointerException("failure");
+		}
+		return complete(null, failure);
+	}
+
+	/**
+	 * Complete when the result of a handler completes, without blocking.
+	 */
+	@SuppressWarnings("unchecked")
+	public void completeWith(Future<? extends V> result) {
+		if (result == null) {
+			complete(null);
+		} else if (result instanceof ActorFuture) {
+			// Not added on an executing actor, see addListener
+			((ActorFuture<V>) result).addWaiter(new Node((Listener<Object>) (Listener<?>) completer(), null, null));
+		} else if (result instanceof CompletableFuture) {
+			((CompletableFuture<V>) result).whenComplete(new BiConsumer<V, Throwable>() {
+				@Override
+				public void accept(V v, Throwable t) {
+					complete(v, t);
+				}
+			});
+		} else if (result.isDone()) {
+			try {
+				complete(result.get());
+			} catch (ExecutionException e) {
+				fail(e.getCause());
+			} catch (CancellationException | InterruptedException e) {
+				fail(e);
+			}
+		} else {
+			fail(new IllegalStateException("Future returned from inbox method is neither done nor an ActorFuture: " + result));
+		}
+	}
+
+	private Listener<V> completer() {
+		return new Listener<V>() {
+			@Override
+			public void completed(V v, Throwable t) {
+				complete(v, t);
+			}
+		};
+	}
+
+	private boolean complete(V value, Throwable failure) {
+		if (!stateUpdater.compareAndSet(this, PENDING, COMPLETING)) {
+			return false;
+		}
+		this.value = value;
+		this.failure = failure;
+		state = DONE;
+
+		Node n = waitersUpdater.getAndSet(this, COMPLETED);
+		// Newest first, run in the order added
+		Node ordered = null;
+		while (n != null) {
+			Node next = n.next;
+			n.next = ordered;
+			ordered = n;
+			n = next;
+		}
+		while (ordered != null) {
+			Node next = ordered.next;
+			ordered.next = null;
+			run(ordered);
+			ordered = next;
+		}
+		return true;
+	}
+
+	/**
+	 * Add a listener, see the class description for the thread it is run on.
+	 */
+	@SuppressWarnings("unchecked")
+	public void addListener(Listener<? super V> listener) {
+		if (listener == null) {
+			throw new NullPointerException("listener");
+		}
+		addWaiter(new Node((Listener<Object>) listener, ActorSystem.getExecutingActor(), null));
+	}
+
+	private void addWaiter(Node node) {
+		for (;;) {
+			Node w = waiters;
+			if (w == COMPLETED) {
+				run(node);
+				return;
+			}
+			node.next = w;
+			if (waitersUpdater.compareAndSet(this, w, node)) {
+				return;
+			}
+		}
+	}
+
+	private void run(Node node) {
+		if (node.thread != null) {
+			LockSupport.unpark(node.thread);
+			return;
+		}
+		try {
+			if (node.actor != null) {
+				node.actor.addPriority(new ListenerAction(node.actor, node.listener, value, failure));
+			} else {
+				node.listener.completed(value, failure);
+			}
+		} catch (Throwable t) {
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+		}
+	}
+
+	/**
+	 * Not supported, an action can not be withdrawn once sent.
+	 *
+	 * @return {@code false}
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return false;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return false;
+	}
+
+	@Override
+	public boolean isDone() {
+		return state == DONE;
+	}
+
+	/**
+	 * Blocks the calling thread. Prefer {@link #addListener(Listener)} from
+	 * actors, a blocked actor thread executes no other actors.
+	 */
+	@Override
+	public V get() throws InterruptedException, ExecutionException {
+		if (state != DONE) {
+			await(false, 0);
+		}
+		return result();
+	}
+
+	@Override
+	public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (state != DONE && !await(true, System.nanoTime() + unit.toNanos(timeout))) {
+			throw new TimeoutException();
+		}
+		return result();
+	}
+
+	private V result() throws ExecutionException {
+		if (failure != null) {
+			throw new ExecutionException(failure);
+		}
+		return value;
+	}
+
+	/**
+	 * @param timed
+	 *            {@code false} to wait for ever
+	 * @param deadline
+	 *            nano time to give up at, if timed
+	 * @return {@code true} if done
+	 */
+	private boolean await(boolean timed, long deadline) throws InterruptedException {
+		addWaiter(new Node(null, null, Thread.currentThread()));
+		while (state != DONE) {
+			if (!timed) {
+				LockSupport.park(this);
+			} else {
+				long left = deadline - System.nanoTime();
+				if (left <= 0) {
+					return false;
+				}
+				LockSupport.parkNanos(this, left);
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		if (state != DONE) {
+			return "ActorFuture[pending]";
+		}
+		return failure != null ? "ActorFuture[failed: " + failure + "]" : "ActorFuture[" + value + "]";
+	}
+}
@@ -3,7 +3,26 @@ package net.pnyxter.actor;
 import java.util.concurrent.Future;
 
 public class ActorUtil {
+	/**
+	 * Result of an {@link Inbox} method. The future returned to the sender is
+	 * completed with the value when the handler returns.
+	 */
 	public static <V> Future<V> returnFuture(V value) {
-		return null;
+		return ActorFuture.completed(value);
+	}
+
+	/**
+	 * Add a listener to the future returned by an {@link Inbox} method. Run as
+	 * a message to the calling actor, see {@link ActorFuture}.
+	 */
+	public static <V> void onComplete(Future<V> future, ActorFuture.Listener<? super V> listener) {
+		ActorFuture<V> f;
+		if (future instanceof ActorFuture) {
+			f = (ActorFuture<V>) future;
+		} else {
+			f = new ActorFuture<>();
+			f.completeWith(future);
+		}
+		f.addListener(listener);
 	}
 }
@@ -11,4 +11,11 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 public @interface Inbox {
 
+	/**
+	 * Actions of priority methods are executed before the waiting actions of
+	 * other methods of the actor. Priority actions are not limited by the
+	 * mailbox capacity. Order is kept among priority actions and among other
+	 * actions.
+	 */
+	boolean priority() default false;
 }
@@ -0,0 +1,14 @@
+package net.pnyxter.actor;
+
+public class MailboxFullException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public MailboxFullException(String message) {
+		super(message);
+	}
+
+	public MailboxFullException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
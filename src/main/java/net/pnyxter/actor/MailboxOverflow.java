@@ -0,0 +1,25 @@
+package net.pnyxter.actor;
+
+/**
+ * What to do with an action sent to an actor with a full mailbox.
+ */
+public enum MailboxOverflow {
+	/**
+	 * Wait for room in the mailbox. A thread processing actors executes other
+	 * ready actors while waiting.
+	 */
+	BLOCK,
+	/**
+	 * Discard the sent action.
+	 */
+	DROP_NEWEST,
+	/**
+	 * Discard the oldest action in the mailbox. It is dropped when the actor
+	 * takes its next action.
+	 */
+	DROP_OLDEST,
+	/**
+	 * Throw a {@link MailboxFullException} to the sender.
+	 */
+	FAIL
+}
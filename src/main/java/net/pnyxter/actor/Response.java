@@ -0,0 +1,243 @@
+package net.pnyxter.actor;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import net.pnyxter.actor.system.ActorSystem;
+
+/**
+ * Response to a request sent to an actor, passed as an argument to the inbox
+ * method and completed by the actor handling it.
+ *
+ * <pre>
+ * Response&lt;Integer&gt; r = Response.create();
+ * counter.read(r);
+ * int value = r.get(1, TimeUnit.SECONDS);
+ * </pre>
+ *
+ * Responses are not actors and are recycled by the thread waiting for them,
+ * so a request allocates nothing once the pool of the thread is filled. A
+ * response is completed once and must not be touched by the responder after
+ * completing it. A response that timed out is not recycled, as it may still
+ * be completed late.
+ *
+ * A thread waiting for a response keeps processing the actors assigned to it.
+ * Blocks the thread when called from within an actor, an actor should use an
+ * inbox method returning a {@link java.util.concurrent.Future} instead.
+ */
+public final class Response<V> {
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<Response> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(Response.class, "state");
+
+	private static final int PENDING = 0;
+	private static final int COMPLETING = 1;
+	private static final int DONE = 2;
+
+	/**
+	 * Free responses kept per thread.
+	 */
+	private static final int POOL_SIZE = 16;
+
+	/**
+	 * Max time to park while actors of the waiting thread may get work.
+	 */
+	private static final long PROCESSING_PARK_NANOS = 1000000;
+
+	private static final class Pool {
+		final Response<?>[] free = new Response<?>[POOL_SIZE];
+		int size = 0;
+	}
+
+	private static final ThreadLocal<Pool> pools = new ThreadLocal<Pool>() {
+		@Override
+		protected Pool initialValue() {
+			return new Pool();
+		}
+	};
+
+	private volatile int state = PENDING;
+
+	/**
+	 * Written before the state is set done.
+	 */
+	private V value = null;
+	private Throwable failure = null;
+
+	/**
+	 * Thread parked in get, unparked by the responder.
+	 */
+	private volatile Thread waiter = null;
+
+	private Response() {
+	}
+
+	/**
+	 * Take a response from the pool of the current thread.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <V> Response<V> create() {
+		Pool pool = pools.get();
+		if (pool.size == 0) {
+			return new Response<>();
+		}
+		Response<V> r = (Response<V>) pool.free[--pool.size];
+		pool.free[pool.size] = null;
+		return r;
+	}
+
+	/**
+	 * @return {@code false} if already completed
+	 */
+	public boolean complete(V value) {
+		return complete(value, null);
+	}
+
+	/**
+	 * Fails the request, thrown by get as the cause of an
+	 * {@link ExecutionException}.
+	 *
+	 * @return {@code false} if already completed
+	 */
+	public boolean fail(Throwable failure) {
+		if (failure == null) {
+			throw new NullPointerException("failure");
+		}
+		return complete(null, failure);
+	}
+
+	private boolean complete(V value, Throwable failure) {
+		if (!stateUpdater.compareAndSet(this, PENDING, COMPLETING)) {
+			return false;
+		}
+		this.value = value;
+		this.failure = failure;
+		state = DONE;
+
+		Thread w = waiter;
+		if (w != null) {
+			LockSupport.unpark(w);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if response is received.
+	 *
+	 * @return <tt>true</tt> if response is received
+	 */
+	public boolean isDone() {
+		return state == DONE;
+	}
+
+	/**
+	 * Waits if necessary for the response to be received, and then retrieves
+	 * its value. The response is recycled and may not be used after the call.
+	 *
+	 * @return the computed result
+	 * @throws ExecutionException
+	 *             if the responder failed the request
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting
+	 */
+	public V get() throws InterruptedException, ExecutionException {
+		if (state != DONE) {
+			await(false, 0);
+		}
+		return result();
+	}
+
+	/**
+	 * Waits if necessary for at most the given time for the response to be
+	 * received, and then retrieves its value. Unless timed out the response is
+	 * recycled and may not be used after the call.
+	 *
+	 * @param timeout
+	 *            the maximum time to wait
+	 * @param unit
+	 *            the time unit of the timeout argument
+	 * @return the computed result
+	 * @throws ExecutionException
+	 *             if the responder failed the request
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting
+	 * @throws TimeoutException
+	 *             if the wait timed out
+	 */
+	public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (state != DONE && !await(true, System.nanoTime() + unit.toNanos(timeout))) {
+			throw new TimeoutException();
+		}
+		return result();
+	}
+
+	private V result() throws ExecutionException {
+		V v = value;
+		Throwable f = failure;
+		recycle();
+		if (f != null) {
+			throw new ExecutionException(f);
+		}
+		return v;
+	}
+
+	/**
+	 * @param timed
+	 *            {@code false} to wait for ever
+	 * @param deadline
+	 *            nano time to give up at, if timed
+	 * @return {@code true} if done
+	 */
+	private boolean await(boolean timed, long deadline) throws InterruptedException {
+		waiter = Thread.currentThread();
+		try {
+			while (state != DONE) {
+				// The responder may be an actor assigned to this thread
+				boolean processing = ActorSystem.processWhileBlocked();
+				if (state == DONE) {
+					break;
+				}
+				long park = processing ? PROCESSING_PARK_NANOS : Long.MAX_VALUE;
+				if (timed) {
+					long left = deadline - System.nanoTime();
+					if (left <= 0) {
+						return false;
+					}
+					park = Math.min(park, left);
+				}
+				if (park == Long.MAX_VALUE) {
+					LockSupport.park(this);
+				} else {
+					LockSupport.parkNanos(this, park);
+				}
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+			}
+			return true;
+		} finally {
+			waiter = null;
+		}
+	}
+
+	private void recycle() {
+		value = null;
+		failure = null;
+		Pool pool = pools.get();
+		if (pool.size < POOL_SIZE) {
+			state = PENDING;
+			pool.free[pool.size++] = this;
+		}
+	}
+
+	@Override
+	public String toString() {
+		if (state != DONE) {
+			return "Response[pending]";
+		}
+		return failure != null ? "Response[failed: " + failure + "]" : "Response[" + value + "]";
+	}
+}
@@ -1,11 +1,50 @@
 package net.pnyxter.actor;
 
+/**
+ * Implemented by an actor to handle failures of the actors it spawned, and of
+ * the actors they spawned in turn, of type {@code A} failing with an
+ * exception of type {@code E}. Called as a priority message to the
+ * supervisor while the failed actor is suspended.
+ */
 public interface Supervisor<A extends Object, E extends Throwable> {
 
 	/**
-	 * 
+	 * What to do with the failed actor.
+	 */
+	enum Directive {
+		/**
+		 * Continue with the next action waiting in the mailbox.
+		 */
+		RESUME,
+		/**
+		 * Discard the actions waiting in the mailbox and continue with the
+		 * actions sent after the decision. State is reset by the supervisor.
+		 */
+		RESTART,
+		/**
+		 * Discard the actions waiting in the mailbox and all actions sent
+		 * later.
+		 */
+		STOP,
+		/**
+		 * Pass the failure on to the supervisor of the supervisor.
+		 */
+		ESCALATE
+	}
+
+	/**
+	 *
 	 * @return {@code true} if the failure was handled and does not need to be
 	 *         propagated.
 	 */
 	boolean actorFailure(A actor, E exception);
+
+	/**
+	 * Decide what to do with the failed actor. By default the actor is resumed
+	 * if the failure is handled by {@link #actorFailure(Object, Throwable)}
+	 * and otherwise the failure is escalated.
+	 */
+	default Directive decide(A actor, E exception) {
+		return actorFailure(actor, exception) ? Directive.RESUME : Directive.ESCALATE;
+	}
 }
@@ -1,23 +1,616 @@
 package net.pnyxter.actor.dispatcher;
 
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import net.pnyxter.actor.ActorFuture;
+import net.pnyxter.actor.MailboxOverflow;
 import net.pnyxter.actor.system.ActorSystem;
 
+/**
+ * Mailbox of a single actor. Actions are executed in the order they are
+ * posted. An actor with posted actions is scheduled on the ready queue of one
+ * thread at a time and the scheduled actor is moved between threads together
+ * with its mailbox.
+ *
+ * The depth of the mailbox decides the scheduling. The producer posting the
+ * first action to an empty mailbox must schedule the actor and the thread
+ * executing the actor must put it back on a ready queue if actions remain
+ * when it releases it.
+ *
+ * Actions are linked through themselves. Producers push on a stack and the
+ * executing thread takes the whole stack at once and reverses it, so neither
+ * posting nor executing allocates anything.
+ *
+ * Priority actions are pushed on a stack of their own that is checked before
+ * each take, so they pass the actions already taken.
+ *
+ * Actions sent to an actor not yet assigned to any thread wait in its mailbox
+ * until it is assigned, whichever thread sent them. The mailbox is then
+ * unscheduled, and either the assigning thread or the sender finding the
+ * actor assigned claims it, see {@link #claimUnscheduled()}.
+ *
+ * The actor is bound to the system current when it is created.
+ *
+ * A bounded mailbox is full when its depth reaches the capacity. Senders
+ * reserve room by counting the action in the depth before posting it, so
+ * concurrent senders can not pass the capacity together. The
+ * {@link MailboxOverflow} policy is applied by the sender when no room is
+ * left.
+ *
+ * An actor failing is suspended until its supervisor has decided, by keeping
+ * the actions executed before the failure counted in the depth so no sender
+ * schedules it meanwhile. The actor executing when the mailbox is created is
+ * recorded as its spawner.
+ */
 public class ActorQueue {
 
-	private Thread actorThread = null;
+	/**
+	 * Returned by {@link #reserve()} when the mailbox is full.
+	 */
+	public static final int FULL = Integer.MIN_VALUE;
+
+	public abstract static class Action {
+		/**
+		 * Next action in the mailbox, or next older action in a queued chain.
+		 */
+		Action next = null;
+
+		/**
+		 * Set when sent to a priority inbox method.
+		 */
+		boolean priority = false;
+
+		/**
+		 * Nano time of the send, zero unless metrics are enabled or the
+		 * action is traced.
+		 */
+		private long sentNanos = 0;
+
+		/**
+		 * Trace of a sampled message chain, the hop of this action and the
+		 * hop that sent it. Zero unless traced.
+		 */
+		private long traceId = 0;
+		private long spanId = 0;
+		private long parentSpanId = 0;
+
+		public boolean isPriority() {
+			return priority;
+		}
+
+		public long getSentNanos() {
+			return sentNanos;
+		}
+
+		public void setSentNanos(long sentNanos) {
+			this.sentNanos = sentNanos;
+		}
+
+		public long getTraceId() {
+			return traceId;
+		}
+
+		public long getSpanId() {
+			return spanId;
+		}
+
+		public long getParentSpanId() {
+			return parentSpanId;
+		}
+
+		public void setTrace(long traceId, long spanId, long parentSpanId) {
+			this.traceId = traceId;
+			this.spanId = spanId;
+			this.parentSpanId = parentSpanId;
+		}
+
+		public abstract ActorRef getActorRef();
+
+		public abstract void execute();
+
+		/**
+		 * Called instead of {@link #execute()} when the action is dropped
+		 * without being executed, to fail whatever the sender waits on.
+		 */
+		public void discard(Throwable reason) {
+		}
+	}
+
+	/**
+	 * Action of an inbox method returning a {@link Future}. The future is
+	 * returned to the sender and completed with the result of the handler.
+	 */
+	public abstract static class FutureAction extends Action {
+		private final ActorFuture<Object> future = new ActorFuture<>();
+
+		public ActorFuture<Object> getFuture() {
+			return future;
+		}
+
+		@Override
+		public final void execute() {
+			Future<Object> result;
+			try {
+				result = call();
+			} catch (Throwable t) {
+				future.fail(t);
+				// Suspends the actor until its supervisor has decided
+				throw t;
+			}
+			future.completeWith(result);
+		}
+
+		@Override
+		public void discard(Throwable reason) {
+			future.fail(reason);
+		}
+
+		/**
+		 * Call the handler.
+		 */
+		protected abstract Future<Object> call();
+	}
+
+	private static final AtomicReferenceFieldUpdater<ActorQueue, Action> postedUpdater = AtomicReferenceFieldUpdater.newUpdater(ActorQueue.class, Action.class, "posted");
+	private static final AtomicReferenceFieldUpdater<ActorQueue, Action> postedPriorityUpdater = AtomicReferenceFieldUpdater.newUpdater(ActorQueue.class, Action.class, "postedPriority");
+	private static final AtomicIntegerFieldUpdater<ActorQueue> depthUpdater = AtomicIntegerFieldUpdater.newUpdater(ActorQueue.class, "depth");
+	private static final AtomicIntegerFieldUpdater<ActorQueue> unscheduledUpdater = AtomicIntegerFieldUpdater.newUpdater(ActorQueue.class, "unscheduled");
+	private static final AtomicIntegerFieldUpdater<ActorQueue> dropRequestsUpdater = AtomicIntegerFieldUpdater.newUpdater(ActorQueue.class, "dropRequests");
+	private static final AtomicLongFieldUpdater<ActorQueue> rejectedUpdater = AtomicLongFieldUpdater.newUpdater(ActorQueue.class, "rejected");
+
+	private final ActorRef actor;
+
+	private final ActorSystem system;
+
+	/**
+	 * Mailbox of the actor executing when this actor was created, or
+	 * {@code null}.
+	 */
+	private final ActorQueue spawner;
 
-	public interface Action {
-		ActorRef getActorRef();
+	/**
+	 * Index of the actor class in the metrics.
+	 */
+	private final int classIndex;
 
-		void execute();
+	/**
+	 * Max depth or zero if unbounded.
+	 */
+	private final int capacity;
+
+	private final MailboxOverflow overflow;
+
+	/**
+	 * Posted actions, newest first.
+	 */
+	private volatile Action posted = null;
+
+	/**
+	 * Actions taken from posted in execution order. Only accessed by the
+	 * executing thread.
+	 */
+	private Action taken = null;
+
+	/**
+	 * Posted priority actions, newest first, and priority actions taken.
+	 */
+	private volatile Action postedPriority = null;
+	private Action takenPriority = null;
+
+	/**
+	 * Posted minus executed actions. May be negative for a short while when
+	 * an action is executed before the producer has counted it.
+	 */
+	private volatile int depth = 0;
+
+	/**
+	 * One while the mailbox has actions but the actor is not scheduled, as it
+	 * was not assigned when the first action was posted.
+	 */
+	private volatile int unscheduled = 0;
+
+	/**
+	 * Number of oldest actions to drop by the executing thread.
+	 */
+	private volatile int dropRequests = 0;
+
+	private volatile long rejected = 0;
+
+	/**
+	 * Actions executed but not released while suspended after a failure.
+	 */
+	private int suspended = 0;
+
+	private volatile boolean stopped = false;
+
+	/**
+	 * Links in the {@link ReadyQueue} the actor is scheduled on.
+	 */
+	ActorQueue nextReady = null;
+	ActorQueue prevReady = null;
+
+	private ActorQueue(ActorRef actor, ActorSystem system, int capacity, MailboxOverflow overflow) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Negative mailbox capacity: " + capacity);
+		}
+		this.actor = actor;
+		this.system = system;
+		this.spawner = ActorSystem.getExecutingActor();
+		this.classIndex = ActorSystem.getActorClassIndex(actor.getClass());
+		this.capacity = capacity;
+		this.overflow = overflow;
+	}
+
+	/**
+	 * Create the mailbox of an actor in the system current, with the default
+	 * capacity and overflow policy of the system.
+	 */
+	public static ActorQueue create(ActorRef actor) {
+		ActorSystem system = ActorSystem.current();
+		return create(actor, system, system.getDefaultMailboxCapacity(), system.getDefaultMailboxOverflow());
+	}
+
+	/**
+	 * @param capacity
+	 *            max number of actions in the mailbox, zero for unbounded
+	 * @param overflow
+	 *            policy when the mailbox is full
+	 */
+	public static ActorQueue create(ActorRef actor, int capacity, MailboxOverflow overflow) {
+		return create(actor, ActorSystem.current(), capacity, overflow);
 	}
 
-	public ActorQueue(ActorRef actor) {
-		ActorSystem.register(actor);
+	/**
+	 * Create the mailbox and register it with the system, once constructed,
+	 * to get the actor assigned.
+	 */
+	public static ActorQueue create(ActorRef actor, ActorSystem system, int capacity, MailboxOverflow overflow) {
+		ActorQueue queue = new ActorQueue(actor, system, capacity, overflow);
+		system.register(queue);
+		return queue;
 	}
 
 	public void add(Action a) {
-		ActorSystem.add(a);
+		system.add(this, a);
+	}
+
+	/**
+	 * Add action to be executed before the waiting actions that are not
+	 * priority actions.
+	 */
+	public void addPriority(Action a) {
+		a.priority = true;
+		system.add(this, a);
+	}
+
+	public ActorRef getActor() {
+		return actor;
+	}
+
+	public ActorSystem getSystem() {
+		return system;
+	}
+
+	public int getClassIndex() {
+		return classIndex;
+	}
+
+	/**
+	 * @return mailbox of the actor that created this actor, or {@code null}
+	 *         if not created by an actor
+	 */
+	public ActorQueue getSpawner() {
+		return spawner;
 	}
 
+	/**
+	 * Put action first in a chain of actions, newest first, to be posted
+	 * later.
+	 *
+	 * @param chain
+	 *            previously queued actions or {@code null}
+	 * @return the new chain
+	 */
+	public static Action queue(Action chain, Action a) {
+		a.next = chain;
+		return a;
+	}
+
+	/**
+	 * Put a chain of actions, created by {@link #queue(Action, Action)}, last
+	 * in the mailbox.
+	 *
+	 * @return {@code true} if the mailbox was empty and the caller must put
+	 *         the actor on a ready queue
+	 */
+	public boolean post(Action chain) {
+		Action oldest = chain;
+		int count = 1;
+		boolean priority = chain.priority;
+		while (oldest.next != null) {
+			oldest = oldest.next;
+			count++;
+			priority |= oldest.priority;
+		}
+		if (priority) {
+			postSplit(chain);
+		} else {
+			push(postedUpdater, chain, oldest);
+		}
+		return depthUpdater.getAndAdd(this, count) == 0;
+	}
+
+	/**
+	 * Reserve room for an action in a bounded mailbox, to be posted with
+	 * {@link #postReserved(Action)}.
+	 *
+	 * @return the depth before the reservation, zero if the caller must put
+	 *         the actor on a ready queue after posting, or {@link #FULL}
+	 */
+	public int reserve() {
+		for (;;) {
+			int d = depth;
+			if (d >= capacity) {
+				return FULL;
+			}
+			if (depthUpdater.compareAndSet(this, d, d + 1)) {
+				return d;
+			}
+		}
+	}
+
+	/**
+	 * Reserve room for an action over the capacity.
+	 *
+	 * @return the depth before the reservation, see {@link #reserve()}
+	 */
+	public int reserveOverCapacity() {
+		return depthUpdater.getAndIncrement(this);
+	}
+
+	/**
+	 * Put an action, already counted by a reservation, last in the mailbox.
+	 * The executing thread may find the actor scheduled before the action is
+	 * linked, as with any post.
+	 */
+	public void postReserved(Action a) {
+		push(postedUpdater, a, a);
+	}
+
+	private void push(AtomicReferenceFieldUpdater<ActorQueue, Action> updater, Action chain, Action oldest) {
+		for (;;) {
+			Action p = updater.get(this);
+			oldest.next = p;
+			if (updater.compareAndSet(this, p, chain)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Post a chain with priority actions as two chains, keeping the order
+	 * within each.
+	 */
+	private void postSplit(Action chain) {
+		Action normal = null;
+		Action normalOldest = null;
+		Action priority = null;
+		Action priorityOldest = null;
+		// Newest first, so link each action after the previous one
+		Action a = chain;
+		while (a != null) {
+			Action n = a.next;
+			a.next = null;
+			if (a.priority) {
+				if (priority == null) {
+					priority = a;
+				} else {
+					priorityOldest.next = a;
+				}
+				priorityOldest = a;
+			} else {
+				if (normal == null) {
+					normal = a;
+				} else {
+					normalOldest.next = a;
+				}
+				normalOldest = a;
+			}
+			a = n;
+		}
+		if (normal != null) {
+			push(postedUpdater, normal, normalOldest);
+		}
+		if (priority != null) {
+			push(postedPriorityUpdater, priority, priorityOldest);
+		}
+	}
+
+	/**
+	 * Mark the actor as not scheduled, after posting the first action while
+	 * unassigned. The sender must look up the assigned thread again after
+	 * marking and claim the actor if it got assigned meanwhile.
+	 */
+	public void markUnscheduled() {
+		unscheduledUpdater.lazySet(this, 1);
+		// The assigned thread is read with acquire only, the fence orders the
+		// mark before the following read of it
+		VarHandle.fullFence();
+	}
+
+	/**
+	 * Claim the scheduling of an actor marked as not scheduled. Called by the
+	 * thread assigning the actor and by a sender finding it assigned after
+	 * marking. Only one of them succeeds.
+	 *
+	 * @return {@code true} if the caller must put the actor on a ready queue
+	 */
+	public boolean claimUnscheduled() {
+		return unscheduled == 1 && unscheduledUpdater.compareAndSet(this, 1, 0);
+	}
+
+	/**
+	 * Take next action from mailbox. Only allowed from the thread that
+	 * scheduled actor is picked up by.
+	 *
+	 * @return next action or {@code null} if the mailbox is empty
+	 */
+	public Action poll() {
+		if (takenPriority != null || postedPriority != null) {
+			Action a = takenPriority;
+			if (a == null) {
+				a = reverse(postedPriorityUpdater.getAndSet(this, null));
+			}
+			takenPriority = a.next;
+			a.next = null;
+			return a;
+		}
+
+		Action a = taken;
+		if (a == null) {
+			if (posted == null) {
+				return null;
+			}
+			a = reverse(postedUpdater.getAndSet(this, null));
+		}
+		taken = a.next;
+		a.next = null;
+		return a;
+	}
+
+	private static Action reverse(Action p) {
+		Action a = null;
+		while (p != null) {
+			Action n = p.next;
+			p.next = a;
+			a = p;
+			p = n;
+		}
+		return a;
+	}
+
+	/**
+	 * Release the actor after executing actions taken from the mailbox.
+	 *
+	 * @param executed
+	 *            number of actions taken, executed or dropped, since picked
+	 *            up
+	 * @return {@code true} if actions remain and the caller must put the
+	 *         actor back on a ready queue
+	 */
+	public boolean release(int executed) {
+		return depthUpdater.addAndGet(this, -executed) > 0;
+	}
+
+	/**
+	 * Suspend the actor after a failure, instead of releasing it. Only called
+	 * by the executing thread.
+	 *
+	 * @param executed
+	 *            number of actions taken since picked up, including the
+	 *            failed action
+	 */
+	public void suspend(int executed) {
+		suspended = executed;
+	}
+
+	/**
+	 * Take over a suspended actor to resume it. The caller polls the mailbox
+	 * if the waiting actions are to be discarded, and then releases it.
+	 *
+	 * @return number of actions to release
+	 */
+	public int resume() {
+		int executed = suspended;
+		suspended = 0;
+		return executed;
+	}
+
+	/**
+	 * Stop the actor. Sends to a stopped actor are rejected, and actions
+	 * taken from its mailbox are discarded.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Number of actions waiting in the mailbox.
+	 */
+	public int size() {
+		return Math.max(0, depth);
+	}
+
+	/**
+	 * @return max number of actions in the mailbox, zero if unbounded
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public MailboxOverflow getOverflow() {
+		return overflow;
+	}
+
+	public boolean isFull() {
+		return capacity > 0 && depth >= capacity;
+	}
+
+	/**
+	 * Request the oldest action in the mailbox to be dropped by the executing
+	 * thread.
+	 */
+	public void requestDropOldest() {
+		dropRequestsUpdater.incrementAndGet(this);
+	}
+
+	/**
+	 * Consume a drop request. Only called from the executing thread before
+	 * executing a taken action.
+	 *
+	 * @return {@code true} if the taken action is to be dropped
+	 */
+	public boolean dropOldest() {
+		for (;;) {
+			int r = dropRequests;
+			if (r == 0) {
+				return false;
+			}
+			if (dropRequestsUpdater.compareAndSet(this, r, r - 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Count an action rejected because the mailbox was full.
+	 */
+	public void rejected() {
+		rejectedUpdater.incrementAndGet(this);
+	}
+
+	public void rejected(int count) {
+		rejectedUpdater.addAndGet(this, count);
+	}
+
+	/**
+	 * Number of actions rejected, dropped or failed, because the mailbox was
+	 * full.
+	 */
+	public long getRejectedCount() {
+		return rejected;
+	}
+
+	@Override
+	public String toString() {
+		return "A#" + actor.hashCode() + "(" + size() + ")";
+	}
 }
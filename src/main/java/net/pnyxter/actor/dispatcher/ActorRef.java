@@ -5,5 +5,5 @@ public interface ActorRef {
 
 	boolean setAssignedThread(Thread thread);
 
-	void updateAssignedThread(Thread thread);
+	boolean reassignThread(Thread expected, Thread thread);
 }
@@ -1,17 +1,28 @@
 package net.pnyxter.actor.dispatcher;
 
-// TODO: Non-actor threads?
-// TODO: Follow supervisors between threads?
-public class ActorThreads {
+import net.pnyxter.actor.system.ActorSystem;
 
-	private static final ThreadLocal<ActorRef> threadActor = new ThreadLocal<>();
+public class ActorThreads {
 
+	/**
+	 * Actor executing on the current thread, in any system. Recorded as the
+	 * spawner of the actors it creates.
+	 *
+	 * @return the actor or {@code null} if no actor is executing
+	 */
 	public static ActorRef getCurrentActor() {
-		return threadActor.get();
+		ActorQueue executing = ActorSystem.getExecutingActor();
+		return executing == null ? null : executing.getActor();
 	}
 
+	/**
+	 * Ignored, the current actor is the actor the actor system is executing
+	 * on the thread.
+	 *
+	 * @deprecated see {@link #getCurrentActor()}
+	 */
+	@Deprecated
 	public static void setCurrentActor(ActorRef actorRef) {
-		threadActor.set(actorRef);
 	}
 
 }
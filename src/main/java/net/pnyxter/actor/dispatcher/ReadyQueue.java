@@ -0,0 +1,101 @@
+package net.pnyxter.actor.dispatcher;
+
+/**
+ * Actors scheduled on a thread, linked through the actors themselves so no
+ * allocation is done when an actor is scheduled. An actor is on at most one
+ * ready queue at a time.
+ *
+ * Actors are added by any thread and polled first by the owning thread and
+ * last by stealing threads. The lock is held only while linking.
+ */
+public class ReadyQueue {
+
+	private ActorQueue head = null;
+	private ActorQueue tail = null;
+
+	private volatile int size = 0;
+
+	/**
+	 * Put actor last.
+	 *
+	 * @return the number of actors waiting before the added one
+	 */
+	public synchronized int add(ActorQueue actor) {
+		actor.nextReady = null;
+		actor.prevReady = tail;
+		if (tail == null) {
+			head = actor;
+		} else {
+			tail.nextReady = actor;
+		}
+		tail = actor;
+		return size++;
+	}
+
+	/**
+	 * Take first actor.
+	 *
+	 * @return the actor or {@code null} if empty
+	 */
+	public ActorQueue poll() {
+		if (size == 0) {
+			return null;
+		}
+		synchronized (this) {
+			ActorQueue actor = head;
+			if (actor != null) {
+				head = actor.nextReady;
+				if (head == null) {
+					tail = null;
+				} else {
+					head.prevReady = null;
+				}
+				actor.nextReady = null;
+				size--;
+			}
+			return actor;
+		}
+	}
+
+	/**
+	 * Take last actor.
+	 *
+	 * @return the actor or {@code null} if empty
+	 */
+	public ActorQueue pollLast() {
+		if (size == 0) {
+			return null;
+		}
+		synchronized (this) {
+			ActorQueue actor = tail;
+			if (actor != null) {
+				tail = actor.prevReady;
+				if (tail == null) {
+					head = null;
+				} else {
+					tail.nextReady = null;
+				}
+				actor.prevReady = null;
+				size--;
+			}
+			return actor;
+		}
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder buffer = new StringBuilder();
+		for (ActorQueue a = head; a != null; a = a.nextReady) {
+			buffer.append("\t").append(a).append("\n");
+		}
+		return buffer.toString();
+	}
+}
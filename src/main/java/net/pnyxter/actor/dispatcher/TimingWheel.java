@@ -0,0 +1,374 @@
+package net.pnyxter.actor.dispatcher;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Hashed timing wheel of one thread. Timeouts are put in the bucket of the
+ * tick they expire on, modulo the number of buckets, so adding, cancelling
+ * and expiring is done in constant time whatever the number of timeouts.
+ * Timeouts further away than one turn of the wheel stay in their bucket until
+ * the turn they expire on.
+ *
+ * The wheel is only advanced by the owning thread. Other threads add and
+ * cancel through lock-free stacks that the owner drains when it advances.
+ * Timeouts never expire before their deadline, but up to one tick after it.
+ *
+ * A task that throws is reported to the uncaught exception handler of the
+ * owner, and the other expired timeouts are still run. A periodic timeout is
+ * run again after throwing, until cancelled.
+ */
+public class TimingWheel {
+
+	private static final int PENDING = 0;
+	private static final int CANCELLED = 1;
+	private static final int EXPIRED = 2;
+
+	public static final class Timeout {
+		private static final AtomicIntegerFieldUpdater<Timeout> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+		private final TimingWheel wheel;
+		private final Runnable task;
+
+		/**
+		 * Period in nanos for periodic timeouts, otherwise zero.
+		 */
+		private final long period;
+
+		private long deadline;
+		private long deadlineTick;
+
+		/**
+		 * Bucket the timeout is linked in, or -1.
+		 */
+		private int bucket = -1;
+		private Timeout prev = null;
+		private Timeout next = null;
+
+		/**
+		 * Links in the stacks of added and of cancelled timeouts.
+		 */
+		private Timeout nextAdded = null;
+		private Timeout nextCancelled = null;
+
+		private volatile int state = PENDING;
+
+		Timeout(TimingWheel wheel, Runnable task, long deadline, long period) {
+			this.wheel = wheel;
+			this.task = task;
+			this.deadline = deadline;
+			this.period = period;
+		}
+
+		/**
+		 * Cancel the timeout. May be called from any thread. A periodic
+		 * timeout is not run again after the call.
+		 *
+		 * @return {@code true} if cancelled, {@code false} if already expired
+		 *         or cancelled
+		 */
+		public boolean cancel() {
+			if (!stateUpdater.compareAndSet(this, PENDING, CANCELLED)) {
+				return false;
+			}
+			if (Thread.currentThread() == wheel.owner) {
+				wheel.unlink(this);
+			} else {
+				wheel.pushCancelled(this);
+			}
+			return true;
+		}
+
+		public boolean isCancelled() {
+			return state == CANCELLED;
+		}
+
+		/**
+		 * @return {@code true} if a single timeout has run, never set for a
+		 *         periodic timeout
+		 */
+		public boolean isExpired() {
+			return state == EXPIRED;
+		}
+
+		public boolean isPeriodic() {
+			return period != 0;
+		}
+	}
+
+	private static final AtomicReferenceFieldUpdater<TimingWheel, Timeout> addedUpdater = AtomicReferenceFieldUpdater.newUpdater(TimingWheel.class, Timeout.class, "added");
+	private static final AtomicReferenceFieldUpdater<TimingWheel, Timeout> cancelledUpdater = AtomicReferenceFieldUpdater.newUpdater(TimingWheel.class, Timeout.class, "cancelled");
+
+	private final Thread owner;
+
+	private final Timeout[] buckets;
+	private final int mask;
+	private final long tickNanos;
+	private final long start;
+
+	/**
+	 * Last tick expired.
+	 */
+	private long tick = 0;
+
+	/**
+	 * Number of timeouts linked in the buckets.
+	 */
+	private int size = 0;
+
+	/**
+	 * Timeouts added by other threads, and timeouts cancelled by other
+	 * threads, newest first.
+	 */
+	private volatile Timeout added = null;
+	private volatile Timeout cancelled = null;
+
+	/**
+	 * @param owner
+	 *            thread advancing the wheel
+	 * @param buckets
+	 *            number of buckets, a power of two
+	 * @param tickNanos
+	 *            duration of a tick
+	 */
+	public TimingWheel(Thread owner, int buckets, long tickNanos) {
+		if (buckets < 1 || Integer.bitCount(buckets) != 1) {
+			throw new IllegalArgumentException("Number of buckets must be a power of two: " + buckets);
+		}
+		if (tickNanos < 1) {
+			throw new IllegalArgumentException("Tick must be positive: " + tickNanos);
+		}
+		this.owner = owner;
+		this.buckets = new Timeout[buckets];
+		this.mask = buckets - 1;
+		this.tickNanos = tickNanos;
+		this.start = System.nanoTime();
+	}
+
+	/**
+	 * Add a timeout. May be called from any thread.
+	 *
+	 * @param delay
+	 *            nanos until the task is run
+	 * @param period
+	 *            nanos between runs of a periodic task, or zero to run once
+	 */
+	public Timeout add(Runnable task, long delay, long period) {
+		if (task == null) {
+			throw new NullPointerException("task");
+		}
+		if (period < 0) {
+			throw new IllegalArgumentException("Negative period: " + period);
+		}
+		Timeout t = new Timeout(this, task, System.nanoTime() + Math.max(0, delay), period);
+		if (Thread.currentThread() == owner) {
+			link(t);
+		} else {
+			pushAdded(t);
+		}
+		return t;
+	}
+
+	/**
+	 * @return {@code true} if there are timeouts to advance
+	 */
+	public boolean hasTimeouts() {
+		return size > 0 || added != null || cancelled != null;
+	}
+
+	/**
+	 * Number of timeouts in the wheel. Timeouts added by other threads are
+	 * counted when the owner has advanced.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public long getTickNanos() {
+		return tickNanos;
+	}
+
+	/**
+	 * Run the timeouts expired at the given time. Only called by the owner.
+	 *
+	 * @return number of timeouts run
+	 */
+	public int advance(long now) {
+		drain();
+
+		long target = (now - start) / tickNanos;
+		if (target <= tick) {
+			return 0;
+		}
+		Timeout expired = null;
+		if (target - tick >= buckets.length) {
+			// A full turn or more since last advance, visit every bucket once
+			for (int b = 0; b < buckets.length; b++) {
+				expired = collect(b, target, expired);
+			}
+		} else {
+			for (long t = tick + 1; t <= target; t++) {
+				expired = collect((int) (t & mask), t, expired);
+			}
+		}
+		tick = target;
+
+		// Run after collecting so periodic timeouts are relinked in a
+		// consistent wheel
+		int count = 0;
+		while (expired != null) {
+			Timeout t = expired;
+			expired = t.next;
+			t.next = null;
+			if (run(t)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private boolean run(Timeout t) {
+		if (t.period == 0) {
+			if (!Timeout.stateUpdater.compareAndSet(t, PENDING, EXPIRED)) {
+				return false;
+			}
+			runTask(t);
+			return true;
+		}
+		if (t.state != PENDING) {
+			return false;
+		}
+		t.deadline += t.period;
+		runTask(t);
+		if (t.state == PENDING) {
+			link(t);
+		}
+		return true;
+	}
+
+	private void runTask(Timeout t) {
+		try {
+			t.task.run();
+		} catch (Throwable e) {
+			owner.getUncaughtExceptionHandler().uncaughtException(owner, e);
+		}
+	}
+
+	/**
+	 * Unlink the timeouts of a bucket expiring at or before the tick.
+	 *
+	 * @return the expired timeouts put first in the given chain
+	 */
+	private Timeout collect(int b, long limit, Timeout expired) {
+		Timeout t = buckets[b];
+		while (t != null) {
+			Timeout n = t.next;
+			if (t.deadlineTick <= limit) {
+				unlink(t);
+				t.next = expired;
+				expired = t;
+			}
+			t = n;
+		}
+		return expired;
+	}
+
+	private void drain() {
+		if (added != null) {
+			Timeout t = reverse(addedUpdater.getAndSet(this, null));
+			while (t != null) {
+				Timeout n = t.nextAdded;
+				t.nextAdded = null;
+				if (t.state == PENDING) {
+					link(t);
+				}
+				t = n;
+			}
+		}
+		if (cancelled != null) {
+			Timeout t = cancelledUpdater.getAndSet(this, null);
+			while (t != null) {
+				Timeout n = t.nextCancelled;
+				t.nextCancelled = null;
+				unlink(t);
+				t = n;
+			}
+		}
+	}
+
+	private void link(Timeout t) {
+		// Round up so the timeout never expires early
+		long d = t.deadline - start;
+		long deadlineTick = d <= 0 ? 0 : (d + tickNanos - 1) / tickNanos;
+		if (deadlineTick <= tick) {
+			deadlineTick = tick + 1;
+		}
+		t.deadlineTick = deadlineTick;
+
+		int b = (int) (deadlineTick & mask);
+		Timeout head = buckets[b];
+		t.bucket = b;
+		t.prev = null;
+		t.next = head;
+		if (head != null) {
+			head.prev = t;
+		}
+		buckets[b] = t;
+		size++;
+	}
+
+	private void unlink(Timeout t) {
+		if (t.bucket < 0) {
+			// Not yet drained or already expired
+			return;
+		}
+		if (t.prev == null) {
+			buckets[t.bucket] = t.next;
+		} else {
+			t.prev.next = t.next;
+		}
+		if (t.next != null) {
+			t.next.prev = t.prev;
+		}
+		t.bucket = -1;
+		t.prev = null;
+		t.next = null;
+		size--;
+	}
+
+	private void pushAdded(Timeout t) {
+		for (;;) {
+			Timeout p = added;
+			t.nextAdded = p;
+			if (addedUpdater.compareAndSet(this, p, t)) {
+				return;
+			}
+		}
+	}
+
+	private void pushCancelled(Timeout t) {
+		for (;;) {
+			Timeout p = cancelled;
+			t.nextCancelled = p;
+			if (cancelledUpdater.compareAndSet(this, p, t)) {
+				return;
+			}
+		}
+	}
+
+	private static Timeout reverse(Timeout p) {
+		Timeout t = null;
+		while (p != null) {
+			Timeout n = p.nextAdded;
+			p.nextAdded = t;
+			t = p;
+			p = n;
+		}
+		return t;
+	}
+
+	@Override
+	public String toString() {
+		return "TimingWheel(" + size + ")";
+	}
+}
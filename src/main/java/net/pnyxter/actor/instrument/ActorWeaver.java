@@ -7,6 +7,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.pnyxter.actor.Actor;
 import net.pnyxter.actor.Inbox;
+import net.pnyxter.actor.Response;
 
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
@@ -29,9 +30,13 @@ public class ActorWeaver implements Opcodes {
 	private static final String ACTOR_DESC = Type.getDescriptor(Actor.class);
 	private static final String INBOX_DESC = Type.getDescriptor(Inbox.class);
 	private static final String FUTURE_DESC = Type.getDescriptor(Future.class);
+	private static final String RESPONSE_DESC = Type.getDescriptor(Response.class);
+	private static final String RESPONSE_CLASS = Type.getInternalName(Response.class);
 
-	private static final AnnotationVisitor IGNORE_ANNOTATION = new AnnotationVisitor(ASM4) {
-	};
+	private static final String ACTION_CLASS = "net/pnyxter/actor/dispatcher/ActorQueue$Action";
+	private static final String FUTURE_ACTION_CLASS = "net/pnyxter/actor/dispatcher/ActorQueue$FutureAction";
+	private static final String VAR_HANDLE_CLASS = "java/lang/invoke/VarHandle";
+	private static final String VAR_HANDLE_DESC = "L" + VAR_HANDLE_CLASS + ";";
 
 	private static class CallerDescription extends SignatureVisitor {
 
@@ -56,7 +61,7 @@ public class ActorWeaver implements Opcodes {
 		String[] parameterDesc = new String[0];
 
 		public CallerDescription(int classVersion, String outerClassName, String name, String description, String signature, String source, int line) throws IllegalInboxMethodException {
-			super(ASM4);
+			super(ASM9);
 
 			this.classVersion = classVersion;
 
@@ -75,12 +80,8 @@ public class ActorWeaver implements Opcodes {
 
 			new SignatureReader(methodSignature).accept(this);
 
-			if (voidReturn) {
-				this.constructorSignature = "(L" + outerClassName + ";" + methodSignature.substring(1);
-			} else {
-				int pos = methodSignature.indexOf(')');
-				this.constructorSignature = "(L" + outerClassName + ";" + methodSignature.substring(1, pos + 1) + "V";
-			}
+			int pos = description.indexOf(')');
+			this.constructorSignature = "(L" + outerClassName + ";" + description.substring(1, pos + 1) + "V";
 
 			StringBuilder nameBuilder = new StringBuilder("Caller_");
 			nameBuilder.append(name);
@@ -99,7 +100,7 @@ public class ActorWeaver implements Opcodes {
 
 		@Override
 		public SignatureVisitor visitParameterType() {
-			return new SignatureVisitor(ASM4) {
+			return new SignatureVisitor(ASM9) {
 				String array = "";
 				String desc = null;
 
@@ -126,6 +127,14 @@ public class ActorWeaver implements Opcodes {
 					return this;
 				}
 
+				@Override
+				public SignatureVisitor visitTypeArgument(char wildcard) {
+					// Erased, the visitor of the argument must not end the
+					// parameter
+					return new SignatureVisitor(ASM9) {
+					};
+				}
+
 				@Override
 				public void visitEnd() {
 					if (desc == null) {
@@ -139,7 +148,7 @@ public class ActorWeaver implements Opcodes {
 
 		@Override
 		public SignatureVisitor visitReturnType() {
-			return new SignatureVisitor(ASM4) {
+			return new SignatureVisitor(ASM9) {
 
 				boolean foundFuture = false;
 
@@ -154,7 +163,7 @@ public class ActorWeaver implements Opcodes {
 				public void visitClassType(String name) {
 					if (foundFuture) {
 						futureDesc = name + ";";
-					} else if (FUTURE_DESC.equals(name + ";")) {
+					} else if (FUTURE_DESC.equals("L" + name + ";")) {
 						foundFuture = true;
 					}
 				}
@@ -174,6 +183,10 @@ public class ActorWeaver implements Opcodes {
 			return outerClassName + "$" + className;
 		}
 
+		public String getSuperClassName() {
+			return voidReturn ? ACTION_CLASS : FUTURE_ACTION_CLASS;
+		}
+
 	}
 
 	private static byte[] createInboxCallAction(CallerDescription caller) {
@@ -187,13 +200,16 @@ public class ActorWeaver implements Opcodes {
 		String innerClassName = caller.className;
 		String fullInnerClassName = caller.getFullClassName();
 
-		cw.visit(caller.classVersion, ACC_FINAL + ACC_SUPER, fullInnerClassName, null, "java/lang/Object", new String[] { "net/pnyxter/actor/dispatcher/ActorQueue$Action" });
+		cw.visit(caller.classVersion, ACC_FINAL + ACC_SUPER, fullInnerClassName, null, caller.getSuperClassName(), null);
 
 		cw.visitSource(caller.source, null);
 
 		cw.visitInnerClass(fullInnerClassName, caller.outerClassName, innerClassName, ACC_PRIVATE + ACC_FINAL);
 
-		cw.visitInnerClass("net/pnyxter/actor/dispatcher/ActorQueue$Action", "net/pnyxter/actor/dispatcher/ActorQueue", "Action", ACC_PUBLIC + ACC_STATIC + ACC_ABSTRACT + ACC_INTERFACE);
+		cw.visitInnerClass(ACTION_CLASS, "net/pnyxter/actor/dispatcher/ActorQueue", "Action", ACC_PUBLIC + ACC_STATIC + ACC_ABSTRACT);
+		if (!caller.voidReturn) {
+			cw.visitInnerClass(FUTURE_ACTION_CLASS, "net/pnyxter/actor/dispatcher/ActorQueue", "FutureAction", ACC_PUBLIC + ACC_STATIC + ACC_ABSTRACT);
+		}
 
 		StringBuilder params = new StringBuilder();
 		int i = 0;
@@ -219,34 +235,39 @@ public class ActorWeaver implements Opcodes {
 			mv.visitVarInsn(ALOAD, 1);
 			mv.visitFieldInsn(PUTFIELD, fullInnerClassName, "this$0", "L" + caller.outerClassName + ";");
 			mv.visitVarInsn(ALOAD, 0);
-			mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+			mv.visitMethodInsn(INVOKESPECIAL, caller.getSuperClassName(), "<init>", "()V", false);
 
 			i = 0;
+			// Slots of this and the outer actor first, long and double take two
+			int slot = 2;
 			for (String a : caller.parameterDesc) {
 				i++;
 
 				mv.visitVarInsn(ALOAD, 0);
 
-				if (a.startsWith("L")) {
+				if (a.equals(RESPONSE_DESC)) {
+					// Completed by the receiver, passed as is
+					mv.visitVarInsn(ALOAD, slot);
+				} else if (a.startsWith("L")) {
 					mv.visitLdcInsn(Type.getType(a));
-					mv.visitVarInsn(ALOAD, i + 1);
-					mv.visitMethodInsn(INVOKESTATIC, "net/pnyxter/immutalizer/Immutalizer", "ensureImmutable", "(Ljava/lang/Class;Ljava/lang/Object;)Ljava/lang/Object;");
-					mv.visitTypeInsn(CHECKCAST, a);
+					mv.visitVarInsn(ALOAD, slot);
+					mv.visitMethodInsn(INVOKESTATIC, "net/pnyxter/immutalizer/Immutalizer", "ensureImmutable", "(Ljava/lang/Class;Ljava/lang/Object;)Ljava/lang/Object;", false);
+					mv.visitTypeInsn(CHECKCAST, Type.getType(a).getInternalName());
 				} else {
 					switch (a) {
 					case "I":
 					case "B":
 					case "Z":
-						mv.visitVarInsn(ILOAD, i + 1);
+						mv.visitVarInsn(ILOAD, slot);
 						break;
 					case "J":
-						mv.visitVarInsn(LLOAD, i + 1);
+						mv.visitVarInsn(LLOAD, slot);
 						break;
 					case "F":
-						mv.visitVarInsn(FLOAD, i + 1);
+						mv.visitVarInsn(FLOAD, slot);
 						break;
 					case "D":
-						mv.visitVarInsn(DLOAD, i + 1);
+						mv.visitVarInsn(DLOAD, slot);
 						break;
 					default:
 						throw new ClassFormatError("Unsuported type on actor method: " + a);
@@ -254,21 +275,29 @@ public class ActorWeaver implements Opcodes {
 				}
 
 				mv.visitFieldInsn(PUTFIELD, fullInnerClassName, "a" + i, a);
+				slot += Type.getType(a).getSize();
 			}
 			mv.visitInsn(RETURN);
 			Label l3 = new Label();
 			mv.visitLabel(l3);
 			mv.visitLocalVariable("this", "L" + fullInnerClassName + ";", null, l0, l3, 0);
 			i = 0;
+			slot = 2;
 			for (String a : caller.parameterDesc) {
 				i++;
-				mv.visitLocalVariable("a" + i, a, null, l0, l3, 1 + i);
+				mv.visitLocalVariable("a" + i, a, null, l0, l3, slot);
+				slot += Type.getType(a).getSize();
 			}
 			mv.visitMaxs(0, 0); // COMPUTE_MAXS
 			mv.visitEnd();
 		}
 		{
-			mv = cw.visitMethod(ACC_PUBLIC, "execute", "()V", null, null);
+			// Future actions call the handler from FutureAction.execute()
+			if (caller.voidReturn) {
+				mv = cw.visitMethod(ACC_PUBLIC, "execute", "()V", null, null);
+			} else {
+				mv = cw.visitMethod(ACC_PROTECTED, "call", "()Ljava/util/concurrent/Future;", null, null);
+			}
 			mv.visitCode();
 			Label l0 = new Label();
 			mv.visitLabel(l0);
@@ -283,8 +312,8 @@ public class ActorWeaver implements Opcodes {
 				mv.visitFieldInsn(GETFIELD, fullInnerClassName, "a" + i, a);
 			}
 
-			mv.visitMethodInsn(INVOKEVIRTUAL, caller.outerClassName, IN_ACTOR_PREFIX + caller.methodName, caller.methodDesc);
-			mv.visitInsn(RETURN);
+			mv.visitMethodInsn(INVOKEVIRTUAL, caller.outerClassName, IN_ACTOR_PREFIX + caller.methodName, caller.methodDesc, false);
+			mv.visitInsn(caller.voidReturn ? RETURN : ARETURN);
 
 			Label l2 = new Label();
 			mv.visitLabel(l2);
@@ -292,6 +321,43 @@ public class ActorWeaver implements Opcodes {
 			mv.visitMaxs(0, 0); // COMPUTE_MAXS
 			mv.visitEnd();
 		}
+		if (Arrays.asList(caller.parameterDesc).contains(RESPONSE_DESC)) {
+			// Fail the responses of a dropped action, the future of a future
+			// action is failed by FutureAction
+			mv = cw.visitMethod(ACC_PUBLIC, "discard", "(Ljava/lang/Throwable;)V", null, null);
+			mv.visitCode();
+			Label l0 = new Label();
+			mv.visitLabel(l0);
+			mv.visitLineNumber(caller.line, l0);
+			if (!caller.voidReturn) {
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitMethodInsn(INVOKESPECIAL, FUTURE_ACTION_CLASS, "discard", "(Ljava/lang/Throwable;)V", false);
+			}
+			i = 0;
+			for (String a : caller.parameterDesc) {
+				i++;
+				if (a.equals(RESPONSE_DESC)) {
+					Label next = new Label();
+					mv.visitVarInsn(ALOAD, 0);
+					mv.visitFieldInsn(GETFIELD, fullInnerClassName, "a" + i, a);
+					mv.visitJumpInsn(IFNULL, next);
+					mv.visitVarInsn(ALOAD, 0);
+					mv.visitFieldInsn(GETFIELD, fullInnerClassName, "a" + i, a);
+					mv.visitVarInsn(ALOAD, 1);
+					mv.visitMethodInsn(INVOKEVIRTUAL, RESPONSE_CLASS, "fail", "(Ljava/lang/Throwable;)Z", false);
+					mv.visitInsn(POP);
+					mv.visitLabel(next);
+				}
+			}
+			mv.visitInsn(RETURN);
+			Label l1 = new Label();
+			mv.visitLabel(l1);
+			mv.visitLocalVariable("this", "L" + fullInnerClassName + ";", null, l0, l1, 0);
+			mv.visitLocalVariable("reason", "Ljava/lang/Throwable;", null, l0, l1, 1);
+			mv.visitMaxs(0, 0); // COMPUTE_MAXS
+			mv.visitEnd();
+		}
 		{
 			mv = cw.visitMethod(ACC_PUBLIC, "getActorRef", "()Lnet/pnyxter/actor/dispatcher/ActorRef;", null, null);
 			mv.visitCode();
@@ -322,11 +388,15 @@ public class ActorWeaver implements Opcodes {
 
 		final AtomicBoolean actor = new AtomicBoolean(false);
 
-		ClassVisitor cv = new ClassVisitor(ASM4, cw) {
+		ClassVisitor cv = new ClassVisitor(ASM9, cw) {
 			boolean fieldsAdded = false;
 			String source = null;
 			int classVersion;
 
+			// From @Actor, capacity is negative for the system default
+			int mailboxCapacity = -1;
+			String mailboxOverflow = "BLOCK";
+
 			@Override
 			public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
 				classVersion = version;
@@ -348,7 +418,21 @@ public class ActorWeaver implements Opcodes {
 					System.out.println("Actor detected: " + className);
 
 					actor.set(true);
-					return IGNORE_ANNOTATION;
+					return new AnnotationVisitor(ASM9) {
+						@Override
+						public void visit(String name, Object value) {
+							if ("mailboxCapacity".equals(name)) {
+								mailboxCapacity = (Integer) value;
+							}
+						}
+
+						@Override
+						public void visitEnum(String name, String desc, String value) {
+							if ("overflow".equals(name)) {
+								mailboxOverflow = value;
+							}
+						}
+					};
 				} else {
 					return super.visitAnnotation(desc, visible);
 				}
@@ -369,7 +453,7 @@ public class ActorWeaver implements Opcodes {
 					super.visitField(ACC_PRIVATE + ACC_FINAL + ACC_TRANSIENT, IN_ACTOR_PREFIX + "queue", "Lnet/pnyxter/actor/dispatcher/ActorQueue;", null, null).visitEnd();
 					super.visitField(ACC_PRIVATE + ACC_FINAL + ACC_TRANSIENT, IN_ACTOR_PREFIX + "spawner", "Lnet/pnyxter/actor/dispatcher/ActorRef;", null, null).visitEnd();
 					super.visitField(ACC_PRIVATE + ACC_TRANSIENT, IN_ACTOR_PREFIX + "assigned_thread", "Ljava/lang/Thread;", null, null).visitEnd();
-					super.visitField(ACC_PRIVATE + ACC_FINAL + ACC_STATIC, IN_ACTOR_PREFIX + "assigned_thread_offset", "J", null, null).visitEnd();
+					super.visitField(ACC_PRIVATE + ACC_FINAL + ACC_STATIC, IN_ACTOR_PREFIX + "assigned_thread_handle", VAR_HANDLE_DESC, null, null).visitEnd();
 
 					{
 						MethodVisitor mv = super.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
@@ -377,10 +461,12 @@ public class ActorWeaver implements Opcodes {
 						Label l0 = new Label();
 						mv.visitLabel(l0);
 						mv.visitLineNumber(22, l0);
-						mv.visitLdcInsn(Type.getType("L" + className + ";"));
+						// Looked up by the actor class itself, with access to the private field
+						mv.visitMethodInsn(INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;", false);
 						mv.visitLdcInsn(IN_ACTOR_PREFIX + "assigned_thread");
-						mv.visitMethodInsn(INVOKESTATIC, "net/pnyxter/multicore/cas/Methods", "objectFieldOffset", "(Ljava/lang/Class;Ljava/lang/String;)J");
-						mv.visitFieldInsn(PUTSTATIC, className, IN_ACTOR_PREFIX + "assigned_thread_offset", "J");
+						mv.visitLdcInsn(Type.getType("Ljava/lang/Thread;"));
+						mv.visitMethodInsn(INVOKESTATIC, "net/pnyxter/multicore/cas/Methods", "fieldHandle", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)" + VAR_HANDLE_DESC, false);
+						mv.visitFieldInsn(PUTSTATIC, className, IN_ACTOR_PREFIX + "assigned_thread_handle", VAR_HANDLE_DESC);
 						Label l1 = new Label();
 						mv.visitLabel(l1);
 						mv.visitLineNumber(23, l1);
@@ -393,8 +479,11 @@ public class ActorWeaver implements Opcodes {
 						mv.visitCode();
 						Label l0 = new Label();
 						mv.visitLabel(l0);
+						// Acquire, a thread set by another thread is seen by senders
+						// without a full fence on each send
+						mv.visitFieldInsn(GETSTATIC, className, IN_ACTOR_PREFIX + "assigned_thread_handle", VAR_HANDLE_DESC);
 						mv.visitVarInsn(ALOAD, 0);
-						mv.visitFieldInsn(GETFIELD, className, IN_ACTOR_PREFIX + "assigned_thread", "Ljava/lang/Thread;");
+						mv.visitMethodInsn(INVOKEVIRTUAL, VAR_HANDLE_CLASS, "getAcquire", "(L" + className + ";)Ljava/lang/Thread;", false);
 						mv.visitInsn(ARETURN);
 						Label l1 = new Label();
 						mv.visitLabel(l1);
@@ -407,11 +496,11 @@ public class ActorWeaver implements Opcodes {
 						mv.visitCode();
 						Label l0 = new Label();
 						mv.visitLabel(l0);
+						mv.visitFieldInsn(GETSTATIC, className, IN_ACTOR_PREFIX + "assigned_thread_handle", VAR_HANDLE_DESC);
 						mv.visitVarInsn(ALOAD, 0);
-						mv.visitFieldInsn(GETSTATIC, className, IN_ACTOR_PREFIX + "assigned_thread_offset", "J");
 						mv.visitInsn(ACONST_NULL);
 						mv.visitVarInsn(ALOAD, 1);
-						mv.visitMethodInsn(INVOKESTATIC, "net/pnyxter/multicore/cas/Methods", "compareAndSwap", "(Ljava/lang/Object;JLjava/lang/Object;Ljava/lang/Object;)Z");
+						mv.visitMethodInsn(INVOKEVIRTUAL, VAR_HANDLE_CLASS, "compareAndSet", "(L" + className + ";Ljava/lang/Thread;Ljava/lang/Thread;)Z", false);
 						mv.visitInsn(IRETURN);
 						Label l1 = new Label();
 						mv.visitLabel(l1);
@@ -421,26 +510,21 @@ public class ActorWeaver implements Opcodes {
 						mv.visitEnd();
 					}
 					{
-						MethodVisitor mv = this.visitMethod(ACC_PUBLIC, "updateAssignedThread", "(Ljava/lang/Thread;)V", null, null);
+						MethodVisitor mv = super.visitMethod(ACC_PUBLIC, "reassignThread", "(Ljava/lang/Thread;Ljava/lang/Thread;)Z", null, null);
 						mv.visitCode();
 						Label l0 = new Label();
 						mv.visitLabel(l0);
-						mv.visitVarInsn(ALOAD, 0);
-						mv.visitFieldInsn(GETFIELD, className, IN_ACTOR_PREFIX + "assigned_thread", "Ljava/lang/Thread;");
-						Label l1 = new Label();
-						mv.visitJumpInsn(IFNONNULL, l1);
-						Label l2 = new Label();
-						mv.visitLabel(l2);
+						mv.visitFieldInsn(GETSTATIC, className, IN_ACTOR_PREFIX + "assigned_thread_handle", VAR_HANDLE_DESC);
 						mv.visitVarInsn(ALOAD, 0);
 						mv.visitVarInsn(ALOAD, 1);
-						mv.visitFieldInsn(PUTFIELD, className, IN_ACTOR_PREFIX + "assigned_thread", "Ljava/lang/Thread;");
+						mv.visitVarInsn(ALOAD, 2);
+						mv.visitMethodInsn(INVOKEVIRTUAL, VAR_HANDLE_CLASS, "compareAndSet", "(L" + className + ";Ljava/lang/Thread;Ljava/lang/Thread;)Z", false);
+						mv.visitInsn(IRETURN);
+						Label l1 = new Label();
 						mv.visitLabel(l1);
-						mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
-						mv.visitInsn(RETURN);
-						Label l3 = new Label();
-						mv.visitLabel(l3);
-						mv.visitLocalVariable("this", "L" + className + ";", null, l0, l3, 0);
-						mv.visitLocalVariable("thread", "Ljava/lang/Thread;", null, l0, l3, 1);
+						mv.visitLocalVariable("this", "L" + className + ";", null, l0, l1, 0);
+						mv.visitLocalVariable("expected", "Ljava/lang/Thread;", null, l0, l1, 1);
+						mv.visitLocalVariable("thread", "Ljava/lang/Thread;", null, l0, l1, 2);
 						mv.visitMaxs(0, 0); // COMPUTE_MAXS
 						mv.visitEnd();
 					}
@@ -456,7 +540,7 @@ public class ActorWeaver implements Opcodes {
 					addActorExtensions();
 
 					if ("<init>".equals(name)) {
-						return new MethodVisitor(ASM4, super.visitMethod(access, name, desc, signature, exceptionsArray)) {
+						return new MethodVisitor(ASM9, super.visitMethod(access, name, desc, signature, exceptionsArray)) {
 							boolean superCalled = false;
 
 							int currentLine = 0;
@@ -468,8 +552,8 @@ public class ActorWeaver implements Opcodes {
 							}
 
 							@Override
-							public void visitMethodInsn(int opcode, String owner, String name, String desc) {
-								super.visitMethodInsn(opcode, owner, name, desc);
+							public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+								super.visitMethodInsn(opcode, owner, name, desc, itf);
 
 								if (!superCalled && "<init>".equals(name)) {
 									superCalled = true;
@@ -479,10 +563,14 @@ public class ActorWeaver implements Opcodes {
 									mv.visitLineNumber(currentLine, l1);
 
 									super.visitVarInsn(ALOAD, 0);
-									super.visitTypeInsn(NEW, "net/pnyxter/actor/dispatcher/ActorQueue");
-									super.visitInsn(DUP);
 									super.visitVarInsn(ALOAD, 0);
-									super.visitMethodInsn(INVOKESPECIAL, "net/pnyxter/actor/dispatcher/ActorQueue", "<init>", "(Lnet/pnyxter/actor/dispatcher/ActorRef;)V");
+									if (mailboxCapacity >= 0) {
+										super.visitLdcInsn(mailboxCapacity);
+										super.visitFieldInsn(GETSTATIC, "net/pnyxter/actor/MailboxOverflow", mailboxOverflow, "Lnet/pnyxter/actor/MailboxOverflow;");
+										super.visitMethodInsn(INVOKESTATIC, "net/pnyxter/actor/dispatcher/ActorQueue", "create", "(Lnet/pnyxter/actor/dispatcher/ActorRef;ILnet/pnyxter/actor/MailboxOverflow;)Lnet/pnyxter/actor/dispatcher/ActorQueue;", false);
+									} else {
+										super.visitMethodInsn(INVOKESTATIC, "net/pnyxter/actor/dispatcher/ActorQueue", "create", "(Lnet/pnyxter/actor/dispatcher/ActorRef;)Lnet/pnyxter/actor/dispatcher/ActorQueue;", false);
+									}
 									super.visitFieldInsn(PUTFIELD, className, IN_ACTOR_PREFIX + "queue", "Lnet/pnyxter/actor/dispatcher/ActorQueue;");
 
 									Label l2 = new Label();
@@ -490,7 +578,7 @@ public class ActorWeaver implements Opcodes {
 									mv.visitLineNumber(currentLine, l2);
 
 									super.visitVarInsn(ALOAD, 0);
-									super.visitMethodInsn(INVOKESTATIC, "net/pnyxter/actor/dispatcher/ActorThreads", "getCurrentActor", "()Lnet/pnyxter/actor/dispatcher/ActorRef;");
+									super.visitMethodInsn(INVOKESTATIC, "net/pnyxter/actor/dispatcher/ActorThreads", "getCurrentActor", "()Lnet/pnyxter/actor/dispatcher/ActorRef;", false);
 									super.visitFieldInsn(PUTFIELD, className, IN_ACTOR_PREFIX + "spawner", "Lnet/pnyxter/actor/dispatcher/ActorRef;");
 								}
 							}
@@ -499,9 +587,10 @@ public class ActorWeaver implements Opcodes {
 
 					}
 
-					return new MethodNode(ASM4, access, name, desc, signature, exceptionsArray) {
+					return new MethodNode(ASM9, access, name, desc, signature, exceptionsArray) {
 						int line = 0;
 						boolean inbox = false;
+						boolean priority = false;
 
 						@Override
 						public void visitLineNumber(int line, Label start) {
@@ -520,7 +609,14 @@ public class ActorWeaver implements Opcodes {
 								System.out.println("Inbox detected: " + className + "#" + name);
 								inbox = true;
 
-								return IGNORE_ANNOTATION;
+								return new AnnotationVisitor(ASM9) {
+									@Override
+									public void visit(String name, Object value) {
+										if ("priority".equals(name)) {
+											priority = (Boolean) value;
+										}
+									}
+								};
 							}
 							return super.visitAnnotation(desc, visible);
 						}
@@ -551,44 +647,55 @@ public class ActorWeaver implements Opcodes {
 								enqueueMethod.visitInsn(DUP);
 
 								enqueueMethod.visitVarInsn(ALOAD, 0);
-								int i = 0;
+								int slot = 1;
 								for (String a : caller.parameterDesc) {
-									i++;
 
 									if (a.startsWith("L")) {
-										enqueueMethod.visitVarInsn(ALOAD, i);
+										enqueueMethod.visitVarInsn(ALOAD, slot);
 									} else {
 										switch (a) {
 										case "I":
 										case "B":
 										case "Z":
-											enqueueMethod.visitVarInsn(ILOAD, i);
+											enqueueMethod.visitVarInsn(ILOAD, slot);
 											break;
 										case "J":
-											enqueueMethod.visitVarInsn(LLOAD, i);
+											enqueueMethod.visitVarInsn(LLOAD, slot);
 											break;
 										case "F":
-											enqueueMethod.visitVarInsn(FLOAD, i);
+											enqueueMethod.visitVarInsn(FLOAD, slot);
 											break;
 										case "D":
-											enqueueMethod.visitVarInsn(DLOAD, i);
+											enqueueMethod.visitVarInsn(DLOAD, slot);
 											break;
 										default:
 											throw new ClassFormatError("Unsuported type on actor method (building action): " + a);
 										}
 									}
+									slot += Type.getType(a).getSize();
 								}
 
-								enqueueMethod.visitMethodInsn(INVOKESPECIAL, caller.getFullClassName(), "<init>", caller.constructorSignature);
-								enqueueMethod.visitMethodInsn(INVOKEVIRTUAL, "net/pnyxter/actor/dispatcher/ActorQueue", "add", "(Lnet/pnyxter/actor/dispatcher/ActorQueue$Action;)V");
-								enqueueMethod.visitInsn(RETURN);
+								enqueueMethod.visitMethodInsn(INVOKESPECIAL, caller.getFullClassName(), "<init>", caller.constructorSignature, false);
+								if (!caller.voidReturn) {
+									// Keep the action to return its future
+									enqueueMethod.visitInsn(DUP_X1);
+								}
+								enqueueMethod.visitMethodInsn(INVOKEVIRTUAL, "net/pnyxter/actor/dispatcher/ActorQueue", priority ? "addPriority" : "add", "(Lnet/pnyxter/actor/dispatcher/ActorQueue$Action;)V", false);
+								if (caller.voidReturn) {
+									enqueueMethod.visitInsn(RETURN);
+								} else {
+									enqueueMethod.visitMethodInsn(INVOKEVIRTUAL, FUTURE_ACTION_CLASS, "getFuture", "()Lnet/pnyxter/actor/ActorFuture;", false);
+									enqueueMethod.visitInsn(ARETURN);
+								}
 								Label l2 = new Label();
 								enqueueMethod.visitLabel(l2);
 								enqueueMethod.visitLocalVariable("this", "L" + caller.outerClassName + ";", null, l0, l2, 0);
-								i = 0;
+								int i = 0;
+								slot = 1;
 								for (String pDesc : caller.parameterDesc) {
 									i++;
-									enqueueMethod.visitLocalVariable("a" + i, pDesc, null, l0, l2, 1);
+									enqueueMethod.visitLocalVariable("a" + i, pDesc, null, l0, l2, slot);
+									slot += Type.getType(pDesc).getSize();
 								}
 
 								enqueueMethod.visitMaxs(0, 0); // COMPUTE_MAXS
@@ -0,0 +1,129 @@
+package net.pnyxter.actor.system;
+
+/**
+ * Snapshot of the metrics of an actor system, of one of its threads or of
+ * one actor class. Counters of threads are always kept, while the counters by
+ * actor class and the histograms are only recorded while metrics are
+ * enabled, see {@link ActorSystem#setMetricsEnabled(boolean)}.
+ *
+ * Taken without stopping the threads, so the values of a busy system are
+ * approximate.
+ */
+public class ActorMetrics {
+
+	private final String name;
+
+	long sent = 0;
+	long executed = 0;
+	long assigned = 0;
+	long stolen = 0;
+	long rejected = 0;
+	long failures = 0;
+	long pinFailures = 0;
+
+	final Histogram queueingDelay = new Histogram();
+	final Histogram serviceTime = new Histogram();
+	final Histogram mailboxDepth = new Histogram();
+
+	ActorMetrics(String name) {
+		this.name = name;
+	}
+
+	void addCounters(ThreadMetrics.ClassMetrics m) {
+		sent += m.sent;
+		executed += m.executed;
+		assigned += m.assigned;
+		stolen += m.stolen;
+		rejected += m.rejected;
+		failures += m.failures;
+	}
+
+	void addHistograms(ThreadMetrics.ClassMetrics m) {
+		queueingDelay.add(m.queueingDelay);
+		serviceTime.add(m.serviceTime);
+		mailboxDepth.add(m.mailboxDepth);
+	}
+
+	/**
+	 * Name of the system, thread or actor class.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public long getSentCount() {
+		return sent;
+	}
+
+	public long getExecutedCount() {
+		return executed;
+	}
+
+	public long getAssignedCount() {
+		return assigned;
+	}
+
+	public long getStolenCount() {
+		return stolen;
+	}
+
+	/**
+	 * Actions rejected, dropped or failed because of full mailboxes.
+	 */
+	public long getRejectedCount() {
+		return rejected;
+	}
+
+	public long getFailureCount() {
+		return failures;
+	}
+
+	/**
+	 * Actor threads that failed to pin to their CPU and run unpinned.
+	 */
+	public long getPinFailureCount() {
+		return pinFailures;
+	}
+
+	/**
+	 * Nanos from sending an action until it is executed.
+	 */
+	public Histogram getQueueingDelay() {
+		return queueingDelay;
+	}
+
+	/**
+	 * Nanos executing an action.
+	 */
+	public Histogram getServiceTime() {
+		return serviceTime;
+	}
+
+	/**
+	 * Actions in the mailbox of an actor when picked up for execution.
+	 */
+	public Histogram getMailboxDepth() {
+		return mailboxDepth;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append(name).append(": ");
+		buffer.append(" sent:").append(sent);
+		buffer.append(" executed:").append(executed);
+		buffer.append(" assigned:").append(assigned);
+		buffer.append(" stolen:").append(stolen);
+		buffer.append(" rejected:").append(rejected);
+		buffer.append(" failures:").append(failures);
+		if (pinFailures > 0) {
+			buffer.append(" pin failures:").append(pinFailures);
+		}
+		if (queueingDelay.getCount() > 0) {
+			buffer.append("\n\tqueueing delay ns: ").append(queueingDelay);
+			buffer.append("\n\tservice time ns: ").append(serviceTime);
+			buffer.append("\n\tmailbox depth: ").append(mailboxDepth);
+		}
+		return buffer.toString();
+	}
+}
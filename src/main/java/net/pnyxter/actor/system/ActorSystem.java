@@ -1,29 +1,60 @@
 package net.pnyxter.actor.system;
 
-import java.util.Collection;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import net.pnyxter.actor.MailboxFullException;
+import net.pnyxter.actor.MailboxOverflow;
+import net.pnyxter.actor.Supervisor.Directive;
+import net.pnyxter.actor.dispatcher.ActorQueue;
 import net.pnyxter.actor.dispatcher.ActorQueue.Action;
 import net.pnyxter.actor.dispatcher.ActorRef;
-import net.pnyxter.multicore.BroadcastQueue;
+import net.pnyxter.actor.dispatcher.ReadyQueue;
+import net.pnyxter.actor.dispatcher.TimingWheel;
+import net.pnyxter.actor.dispatcher.TimingWheel.Timeout;
 import net.pnyxter.multicore.JdkSimpleQueue;
 import net.pnyxter.multicore.SimpleQueue;
-import net.pnyxter.multicore.UnsafeBroadcastQueue;
-
-public class ActorSystem implements AutoCloseable {
+import net.pnyxter.multicore.SpscArrayQueue;
+
+/**
+ * Threads and queues executing actors. Each system owns its threads so a
+ * backlog in one system does not delay actors in another.
+ * 
+ * A system is started either with a fixed number of actor threads, see
+ * {@link #start(int)}, or with actors executed on virtual threads, see
+ * {@link #startVirtual()}.
+ * 
+ * An actor is bound to the system that is current when it is created, see
+ * {@link #current()}.
+ */
+public class ActorSystem implements AutoCloseable, ActorSystemMXBean {
 
 	public enum ProcessType {
-		TRY_SINGLE, WAIT_SINGLE, UNTIL_NO_WORK, UNTIL_SHUTDOWN
+		TRY_SINGLE, WAIT_SINGLE, BATCH, UNTIL_NO_WORK, UNTIL_SHUTDOWN
 	};
 
 	public enum ProcessStatus {
@@ -32,24 +63,118 @@ public class ActorSystem implements AutoCloseable {
 
 	private static final long STEP = 0x100;
 
-	private static final AtomicLong nextChunkId = new AtomicLong(0);
+	/**
+	 * Number of empty polls an idle thread does before parking.
+	 */
+	private static final int IDLE_SPINS = 100;
 
-	private static final ThreadLocal<Long> currentLocalChunk = new ThreadLocal<Long>() {
-		@Override
-		protected Long initialValue() {
-			return nextChunk();
-		}
-	};
+	/**
+	 * Max time to park while new actors on the thread wait for an idle thread
+	 * to be assigned to.
+	 */
+	private static final long PENDING_PARK_NANOS = 50000;
 
-	private static final ThreadLocal<Long> localDiff = new ThreadLocal<Long>() {
-		@Override
-		protected Long initialValue() {
-			return 0L;
-		}
-	};
+	private static final int DEFAULT_THROUGHPUT = 16;
+
+	/**
+	 * Max number of actions executed by {@link ProcessType#BATCH}.
+	 */
+	private static final int DEFAULT_BATCH_SIZE = 1024;
+
+	/**
+	 * Number of actions executed in a batch between housekeeping passes, while
+	 * the ready queue is not empty. Keeps handing over new actors to idle
+	 * threads during long batches.
+	 */
+	private static final int HOUSEKEEPING_INTERVAL = 256;
+
+	/**
+	 * Max time to park between quiescence checks. Threads going idle wake up
+	 * waiting threads so this only limits the wait if an embedding thread
+	 * stops processing without going idle.
+	 */
+	private static final long QUIESCENCE_PARK_NANOS = 1000000;
+
+	/**
+	 * Max time to park while a sender is blocked on a full mailbox.
+	 */
+	private static final long BLOCKED_PARK_NANOS = 10000;
+
+	/**
+	 * Resolution and number of buckets of the timing wheel of each thread.
+	 * Timeouts up to about half a second away are found in one turn.
+	 */
+	private static final long TIMER_TICK_NANOS = 1000000;
+	private static final int TIMER_BUCKETS = 512;
+
+	/**
+	 * Number of traced hops kept by each thread, see
+	 * {@link #setTraceSampling(int)}.
+	 */
+	private static final int TRACE_BUFFER_SIZE = 4096;
+
+	/**
+	 * Actors in flight from one actor thread to another, see
+	 * {@link #setThreadChannels(boolean)}. The ready queue is used when full.
+	 */
+	private static final int CHANNEL_CAPACITY = 256;
+
+	/**
+	 * Max number of actions executed on an actor before the thread moves on to
+	 * the next ready actor.
+	 */
+	private volatile int throughput = DEFAULT_THROUGHPUT;
+
+	/**
+	 * Mailbox capacity, zero for unbounded, and overflow policy for actors not
+	 * declaring their own.
+	 */
+	private volatile int defaultMailboxCapacity = 0;
+	private volatile MailboxOverflow defaultMailboxOverflow = MailboxOverflow.BLOCK;
+
+	private volatile boolean pinThreads = false;
+
+	/**
+	 * Schedule actors on other actor threads through a channel per pair of
+	 * threads, see {@link #setThreadChannels(boolean)}.
+	 */
+	private volatile boolean threadChannels = false;
+
+	/**
+	 * Record metrics by actor class and histograms, see
+	 * {@link #setMetricsEnabled(boolean)}.
+	 */
+	private volatile boolean metricsEnabled = false;
+
+	/**
+	 * Sends between sampled traces on each thread, zero when not tracing.
+	 */
+	private volatile int traceSampling = 0;
+
+	private ObjectName mbeanName = null;
+
+	/**
+	 * Actor ids are unique in the JVM, not only in a system.
+	 */
+	private static final AtomicLong nextChunkId = new AtomicLong(0);
 
 	private static final Set<Class<?>> actorClasses = new CopyOnWriteArraySet<>();
 
+	/**
+	 * Actor classes by index in the metrics, and the indexes by class.
+	 */
+	private static volatile Class<?>[] indexedClasses = new Class<?>[0];
+	private static final ConcurrentHashMap<Class<?>, Integer> classIndexes = new ConcurrentHashMap<>();
+
+	private static volatile ActorSystem defaultSystem = null;
+
+	/**
+	 * System explicitly made current on a thread that is not an actor thread.
+	 */
+	private static final ThreadLocal<ActorSystem> currentSystem = new ThreadLocal<>();
+
+	private final String name;
+
 	public static boolean isActor(Class<?> actorClass) {
 		return actorClasses.contains(actorClass);
 	}
@@ -59,6 +184,257 @@ public class ActorSystem implements AutoCloseable {
 		actorClasses.add(actorClass);
 	}
 
+	/**
+	 * Index of an actor class in the metrics kept by class. Looked up once
+	 * for each actor created.
+	 */
+	public static int getActorClassIndex(Class<?> actorClass) {
+		Integer index = classIndexes.get(actorClass);
+		if (index == null) {
+			synchronized (classIndexes) {
+				index = classIndexes.get(actorClass);
+				if (index == null) {
+					Class<?>[] c = Arrays.copyOf(indexedClasses, indexedClasses.length + 1);
+					index = c.length - 1;
+					c[index] = actorClass;
+					indexedClasses = c;
+					classIndexes.put(actorClass, index);
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * The system threads named {@code ActorThread-<n>} belong to.
+	 */
+	public static ActorSystem getDefault() {
+		ActorSystem system = defaultSystem;
+		if (system == null) {
+			synchronized (ActorSystem.class) {
+				system = defaultSystem;
+				if (system == null) {
+					system = new ActorSystem(null);
+					defaultSystem = system;
+				}
+			}
+		}
+		return system;
+	}
+
+	/**
+	 * The system of the current actor thread. On other threads the system of
+	 * the executing actor, or the system made current by
+	 * {@link #setCurrent(ActorSystem)}, or the default system.
+	 */
+	public static ActorSystem current() {
+		Thread thread = Thread.currentThread();
+		if (thread instanceof ActorThread) {
+			return ((ActorThread) thread).system;
+		}
+		ActorSystem system = currentSystem.get();
+		if (system == null) {
+			return getDefault();
+		}
+		return system;
+	}
+
+	/**
+	 * Make a system current on a thread that is not an actor thread. Actors
+	 * created on the thread are bound to the system.
+	 * 
+	 * @param system
+	 *            the system or {@code null} for the default system
+	 * @return the previous system, or {@code null} if the default system was
+	 *         current
+	 * @throws IllegalStateException
+	 *             if called from an actor thread
+	 */
+	public static ActorSystem setCurrent(ActorSystem system) {
+		if (Thread.currentThread() instanceof ActorThread) {
+			throw new IllegalStateException("Actor threads always belong to their own system");
+		}
+		ActorSystem previous = currentSystem.get();
+		if (system == null) {
+			currentSystem.remove();
+		} else {
+			currentSystem.set(system);
+		}
+		return previous;
+	}
+
+	/**
+	 * Actor executing on the current thread, in any system.
+	 * 
+	 * @return the mailbox of the actor or {@code null} if no actor is
+	 *         executing
+	 */
+	public static ActorQueue getExecutingActor() {
+		Thread thread = Thread.currentThread();
+		if (thread instanceof ActorThread) {
+			ActorQueue actor = ((ActorThread) thread).context.executing;
+			if (actor != null) {
+				return actor;
+			}
+		}
+		// Set while executing actors on any other thread
+		ActorSystem system = currentSystem.get();
+		return system == null ? null : system.getThreadContext().executing;
+	}
+
+	/**
+	 * Process the actors of the calling thread while it is blocked waiting for
+	 * a response, as actors assigned to a thread are only executed when it
+	 * processes. Does nothing from within an actor.
+	 *
+	 * @return {@code false} if the thread has no actors to process while
+	 *         blocked
+	 */
+	public static boolean processWhileBlocked() {
+		ActorSystem system = current();
+		ActorThreadContext context = system.getThreadContext(Thread.currentThread());
+		if (context == null || context.executing != null) {
+			return false;
+		}
+		system.processBatch(context, DEFAULT_BATCH_SIZE, 0);
+		return true;
+	}
+
+	/**
+	 * @param name
+	 *            prefix of the thread names
+	 */
+	public ActorSystem(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	public int getThroughput() {
+		return throughput;
+	}
+
+	/**
+	 * Set max number of actions executed in a row on an actor before the next
+	 * ready actor on the same thread is processed. A higher value keeps the
+	 * state of busy actors in cache but increase latency for other actors.
+	 */
+	public void setThroughput(int throughput) {
+		if (throughput < 1) {
+			throw new IllegalArgumentException("Throughput must be positive: " + throughput);
+		}
+		this.throughput = throughput;
+	}
+
+	public boolean isPinThreads() {
+		return pinThreads;
+	}
+
+	/**
+	 * Pin each actor thread started after the call to a CPU of its own, as
+	 * long as there are CPUs, and prefer idle threads close to the spawning
+	 * thread when assigning new actors. Pinned threads keep the caches warm
+	 * for the actors assigned to them. Threads started when all CPUs are
+	 * taken, by this or other systems, run unpinned. A CPU is free again when
+	 * its thread exits.
+	 * 
+	 * Only supported on Linux, using the topology in
+	 * {@code /sys/devices/system/cpu}. Ignored elsewhere.
+	 */
+	public void setPinThreads(boolean pinThreads) {
+		this.pinThreads = pinThreads;
+	}
+
+	public boolean isThreadChannels() {
+		return threadChannels;
+	}
+
+	/**
+	 * Hand actors scheduled by an actor thread to another actor thread over a
+	 * single producer channel of their own, instead of the ready queue of the
+	 * receiver shared by all senders. The receiver moves the actors from its
+	 * channels, round robin, to its ready queue when housekeeping. Senders
+	 * that are not actor threads of the system use the ready queue.
+	 * 
+	 * Pays off when many actor threads send to each other. Only the receiver
+	 * takes from its channels, so an actor waiting in a channel is not seen
+	 * by stealing threads until the receiver has moved it to its ready queue.
+	 * A receiver busy executing a long action delays the actors in its
+	 * channels, where the shared ready queue would have let an idle thread
+	 * steal them. The receiver wakes a stealer when it moves more than one
+	 * actor.
+	 */
+	public void setThreadChannels(boolean threadChannels) {
+		this.threadChannels = threadChannels;
+	}
+
+	@Override
+	public boolean isMetricsEnabled() {
+		return metricsEnabled;
+	}
+
+	/**
+	 * Record metrics by actor class and histograms of queueing delay, service
+	 * time and mailbox depth. Costs reading the clock on each send and
+	 * action. Counters by thread are always kept.
+	 */
+	@Override
+	public void setMetricsEnabled(boolean enabled) {
+		this.metricsEnabled = enabled;
+	}
+
+	public int getTraceSampling() {
+		return traceSampling;
+	}
+
+	/**
+	 * Trace one of every {@code interval} sends from each thread outside of a
+	 * trace. The action of a sampled send is the root of a trace, and every
+	 * action sent while executing a traced action joins its trace, so a trace
+	 * follows a request through all actors it fans out to. The executed hops
+	 * are kept in a ring per thread, see {@link #getTrace()}.
+	 * 
+	 * @param interval
+	 *            sends per sampled trace, zero to stop sampling
+	 */
+	public void setTraceSampling(int interval) {
+		if (interval < 0) {
+			throw new IllegalArgumentException("Negative trace sampling interval: " + interval);
+		}
+		this.traceSampling = interval;
+	}
+
+	public int getDefaultMailboxCapacity() {
+		return defaultMailboxCapacity;
+	}
+
+	public MailboxOverflow getDefaultMailboxOverflow() {
+		return defaultMailboxOverflow;
+	}
+
+	/**
+	 * Set mailbox bound for actors created after the call that do not declare
+	 * their own in {@link net.pnyxter.actor.Actor}.
+	 * 
+	 * @param capacity
+	 *            max number of actions in a mailbox, zero for unbounded
+	 * @param overflow
+	 *            policy when a mailbox is full
+	 */
+	public void setDefaultMailbox(int capacity, MailboxOverflow overflow) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Negative mailbox capacity: " + capacity);
+		}
+		if (overflow == null) {
+			throw new NullPointerException("overflow");
+		}
+		defaultMailboxOverflow = overflow;
+		defaultMailboxCapacity = capacity;
+	}
+
 	private static long nextChunk() {
 		for (;;) {
 			long r = nextChunkId.get();
@@ -70,36 +446,176 @@ public class ActorSystem implements AutoCloseable {
 		}
 	}
 
-	public static long nextActorId() {
-		long v = localDiff.get();
+	private static long nextSpanId(ActorThreadContext context) {
+		long n = context.spanIdOffset + 1;
 
-		long n = v + 1;
+		if (n == STEP) {
+			context.spanIdChunk = nextChunk();
+			n = 0;
+		}
+		context.spanIdOffset = n;
 
-		long c;
+		return context.spanIdChunk + n;
+	}
+
+	public static long nextActorId() {
+		ActorThreadContext context = current().getThreadContext();
+
+		long n = context.actorIdOffset + 1;
 
 		if (n == STEP) {
-			currentLocalChunk.set(c = nextChunk());
+			context.actorIdChunk = nextChunk();
 			n = 0;
-		} else {
-			c = currentLocalChunk.get();
 		}
+		context.actorIdOffset = n;
 
-		return c + n;
+		return context.actorIdChunk + n;
 	}
 
 	private static class ActorThreadContext {
+		private static final AtomicLongFieldUpdater<ActorThreadContext> sentUpdater = AtomicLongFieldUpdater.newUpdater(ActorThreadContext.class, "sentCount");
+		private static final AtomicLongFieldUpdater<ActorThreadContext> completedUpdater = AtomicLongFieldUpdater.newUpdater(ActorThreadContext.class, "completedCount");
+		private static final AtomicIntegerFieldUpdater<ActorThreadContext> idleUpdater = AtomicIntegerFieldUpdater.newUpdater(ActorThreadContext.class, "idle");
+
 		final Thread thread;
-		final ConcurrentLinkedDeque<ActorRef> instantiations = new ConcurrentLinkedDeque<>();
-		final Map<ActorRef, Collection<Action>> actorQueuedActions = new HashMap<>();
-		final BlockingQueue<Action> actions = new LinkedBlockingQueue<>();
-		final BroadcastQueue.Follower<Announcement> assignmentAnnouncementsFollower = assignmentAnnouncements.follower();
+		final ConcurrentLinkedDeque<ActorQueue> instantiations = new ConcurrentLinkedDeque<>();
+		/**
+		 * Actors with posted actions. Polled by own thread and by stealing
+		 * threads.
+		 */
+		final ReadyQueue readyActors = new ReadyQueue();
+		/**
+		 * Index in the workers, or -1 for other threads.
+		 */
+		int workerIndex = -1;
+		/**
+		 * Channels from the thread, by worker index of the receiver. Only
+		 * accessed by the own thread.
+		 */
+		SpscArrayQueue<ActorQueue>[] outbound = newChannels(0);
+		/**
+		 * Channels to the thread, copied on write by the senders. Polled by
+		 * own thread, from {@link #nextInbound}.
+		 */
+		volatile SpscArrayQueue<ActorQueue>[] inbound = newChannels(0);
+		int nextInbound = 0;
+		final Consumer<ActorQueue> toReady = new Consumer<ActorQueue>() {
+			@Override
+			public void accept(ActorQueue actor) {
+				readyActors.add(actor);
+			}
+		};
+		/**
+		 * Timeouts run by the thread, added by any thread.
+		 */
+		final TimingWheel timers;
+
+		/**
+		 * Set if the thread is an actor thread of another system. Unassigned
+		 * actors are assigned to a thread of this system when sent to.
+		 */
+		final boolean foreign;
+
+		/**
+		 * Set if the thread is an actor thread of this system.
+		 */
+		final boolean worker;
+
+		/**
+		 * Set if the context is lent to virtual threads executing actors, one
+		 * at a time.
+		 */
+		final boolean lane;
+		/**
+		 * Set by a lane when the executed actor has actions left.
+		 */
+		boolean runAgain = false;
+
+		volatile boolean parked = false;
+
+		/**
+		 * One while the thread is idle and not yet picked to assign an actor
+		 * to. Only used when threads are pinned.
+		 */
+		volatile int idle = 0;
+
+		/**
+		 * CPU the thread is pinned to, or -1. Cleared by the thread itself if
+		 * pinning fails.
+		 */
+		volatile int cpu;
+
+		/**
+		 * Other actor threads, closest CPU first, and the workers they were
+		 * sorted from. Only accessed by the own thread.
+		 */
+		ActorThreadContext[] neighbours = null;
+		ActorThreadContext[] neighboursOf = null;
+
+		/**
+		 * Actor executing on the thread, if any.
+		 */
+		ActorQueue executing = null;
+		/**
+		 * Set while the thread is blocked on a full mailbox.
+		 */
+		boolean blocked = false;
+
+		/**
+		 * Set while the thread waits for quiescence.
+		 */
+		volatile boolean awaitingQuiescence = false;
+
+		/**
+		 * Actions sent from the thread, and actions executed or dropped on the
+		 * thread. Only written by the own thread, read by threads detecting
+		 * quiescence.
+		 */
+		volatile long sentCount = 0;
+		volatile long completedCount = 0;
+
+		long actorIdChunk = nextChunk();
+		long actorIdOffset = 0;
+
+		/**
+		 * Trace and hop of the traced action executing on the thread, zero if
+		 * none.
+		 */
+		long traceId = 0;
+		long spanId = 0;
+		long spanIdChunk = nextChunk();
+		long spanIdOffset = 0;
+		int untracedSends = 0;
+		/**
+		 * Created on the first traced hop executed by the thread.
+		 */
+		volatile TraceBuffer traces = null;
+
+		long instantiationsCount = 0;
+		long assignmentCount = 0;
+		long actionCount = 0;
+		long stolenCount = 0;
+		long rejectedCount = 0;
+		long failureCount = 0;
+		long pinFailureCount = 0;
+
+		final ThreadMetrics metrics = new ThreadMetrics();
+
+		public ActorThreadContext(ActorSystem system, Thread thread, int cpu) {
+			this.thread = thread;
+			this.cpu = cpu;
+			this.timers = new TimingWheel(thread, TIMER_BUCKETS, TIMER_TICK_NANOS);
+			this.foreign = thread instanceof ActorThread && ((ActorThread) thread).system != system;
+			this.worker = thread instanceof ActorThread && !foreign;
+			this.lane = thread == system.virtualCarrier;
+		}
 
-		int instantiationsCount = 0;
-		int assignmentCount = 0;
-		int actionCount = 0;
+		void sent() {
+			sentUpdater.lazySet(this, sentCount + 1);
+		}
 
-		public ActorThreadContext(Thread thread) {
-			this.thread = thread;
+		void completed(int count) {
+			completedUpdater.lazySet(this, completedCount + count);
 		}
 
 		@Override
@@ -107,41 +623,22 @@ public class ActorSystem implements AutoCloseable {
 			StringBuilder buffer = new StringBuilder();
 
 			buffer.append(thread.getName()).append(": ");
-			buffer.append(" instantiations:").append(instantiationsCount);
-			buffer.append(" assignments:").append(instantiationsCount);
-			buffer.append(" actions:").append(instantiationsCount);
-			buffer.append("\n");
-
-			if (!actions.isEmpty()) {
-				buffer.append("ThQ: \n");
-				for (Action a : actions) {
-					buffer.append("\t#").append(a.hashCode()).append("\n");
-				}
-			}
-			if (!actorQueuedActions.isEmpty()) {
-				buffer.append("AgQ: \n");
-				for (Map.Entry<ActorRef, Collection<Action>> e : actorQueuedActions.entrySet()) {
-					buffer.append("\tA#").append(e.getKey().hashCode()).append("\n");
-					for (Action a : e.getValue()) {
-						buffer.append("\t\t#").append(a.hashCode()).append("\n");
-					}
-				}
-			}
-			if (!instantiations.isEmpty()) {
-				buffer.append("I: \n");
-				for (ActorRef a : instantiations) {
-					buffer.append("\tA#").append(a.hashCode()).append("\n");
-				}
-			}
-			String eventQueue = assignmentAnnouncementsFollower.toString();
-			if (!"[]".equals(eventQueue)) {
-				buffer.append("Ann: \n\t").append(eventQueue).append("\n");
+			int pinned = cpu;
+			if (pinned >= 0) {
+				buffer.append(" cpu:").append(pinned);
 			}
+			buffer.append(" instantiations:").append(instantiationsCount);
+			buffer.append(" assignments:").append(assignmentCount);
+			buffer.append(" actions:").append(actionCount);
+			buffer.append(" stolen:").append(stolenCount);
+			buffer.append(" rejected:").append(rejectedCount);
+			buffer.append(" failures:").append(failureCount);
+			buffer.append(" ready:").append(readyActors.size());
 			return buffer.toString();
 		}
 	}
 
-	public static final ConcurrentHashMap<Thread, ActorThreadContext> threadContexts = new ConcurrentHashMap<Thread, ActorThreadContext>() {
+	private final ConcurrentHashMap<Thread, ActorThreadContext> threadContexts = new ConcurrentHashMap<Thread, ActorThreadContext>() {
 		private static final long serialVersionUID = 1L;
 
 		@Override
@@ -158,172 +655,706 @@ public class ActorSystem implements AutoCloseable {
 			return buffer.toString();
 		}
 	};
-	private static final SimpleQueue<Thread> idleQueue = new JdkSimpleQueue<>();
+	private final SimpleQueue<Thread> idleQueue = new JdkSimpleQueue<>();
+
+	/**
+	 * Contexts of all threads, copied on write, for iteration without
+	 * allocation.
+	 */
+	private volatile ActorThreadContext[] contexts = new ActorThreadContext[0];
+
+	/**
+	 * Contexts of the actor threads of the system, copied on write.
+	 */
+	private volatile ActorThreadContext[] workers = new ActorThreadContext[0];
+
+	/**
+	 * Round robin index when assigning actors sent to from other systems.
+	 */
+	private final AtomicInteger nextWorker = new AtomicInteger(0);
+
+	/**
+	 * Thread, never started, all actors are assigned to when executed on
+	 * virtual threads.
+	 */
+	private volatile Thread virtualCarrier = null;
+
+	/**
+	 * Context of the virtual thread running the timeouts when actors are
+	 * executed on virtual threads. Started on the first timeout.
+	 */
+	private volatile ActorThreadContext virtualTimers = null;
+	private volatile ThreadFactory virtualThreads = null;
+
+	/**
+	 * Contexts of virtual threads not executing any actor.
+	 */
+	private final ConcurrentLinkedQueue<ActorThreadContext> idleLanes = new ConcurrentLinkedQueue<>();
+
+	private final ThreadLocal<ActorThreadContext> localContext = new ThreadLocal<ActorThreadContext>() {
+		@Override
+		protected ActorThreadContext initialValue() {
+			return createThreadContext(Thread.currentThread());
+		}
+	};
+
+	/**
+	 * Number of parked threads. Used to avoid looking for a thread to wake up
+	 * for stealing when no thread is parked.
+	 */
+	private final AtomicInteger parkedThreads = new AtomicInteger(0);
+
+	/**
+	 * Number of threads waiting for quiescence. Threads going idle only look
+	 * for waiting threads to wake up when not zero.
+	 */
+	private final AtomicInteger quiescenceWaiters = new AtomicInteger(0);
 
-	private static final BroadcastQueue<Announcement> assignmentAnnouncements = new UnsafeBroadcastQueue<>();
+	private volatile boolean closed = false;
 
-	public static void start(int threads) {
+	public void start(int threads) {
+		String prefix = name == null ? "ActorThread-" : name + "-ActorThread-";
+		int first;
+		synchronized (threadContexts) {
+			if (virtualCarrier != null) {
+				throw new IllegalStateException("Actors are executed on virtual threads");
+			}
+			first = workers.length;
+		}
+		CpuTopology topology = pinThreads ? CpuTopology.get() : null;
 		for (int i = 0; i < threads; i++) {
-			new ActorThread("ActorThread-" + (1 + i)).start();
+			int cpu = topology != null ? topology.acquireCpu() : -1;
+			new ActorThread(this, prefix + (first + 1 + i), cpu).start();
 		}
 	}
 
-	private static ActorThreadContext getThreadContext() {
-		Thread thread = Thread.currentThread();
-		ActorThreadContext context = threadContexts.get(thread);
-		if (context == null) {
-			threadContexts.put(thread, context = new ActorThreadContext(thread));
+	/**
+	 * Execute actors on virtual threads instead of actor threads. Each actor
+	 * with actions is run by a virtual thread of its own, so a handler that
+	 * blocks only parks its virtual thread and releases the carrier thread to
+	 * other actors. The actions of an actor are still executed one at a time
+	 * and in order.
+	 * 
+	 * Must be called before any actor of the system is sent to.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the system is already started
+	 */
+	public void startVirtual() {
+		synchronized (threadContexts) {
+			if (workers.length > 0 || virtualCarrier != null) {
+				throw new IllegalStateException("Actor system already started");
+			}
+			String prefix = name == null ? "ActorVirtual-" : name + "-ActorVirtual-";
+			virtualThreads = Thread.ofVirtual().name(prefix, 1).factory();
+			virtualCarrier = new Thread(prefix + "lane");
+		}
+	}
+
+	public boolean isVirtual() {
+		return virtualCarrier != null;
+	}
+
+	/**
+	 * Run a task once after a delay, on an actor thread of the system. The task
+	 * typically calls an inbox method, which then sends to the actor without
+	 * any other thread involved.
+	 * 
+	 * Timeouts scheduled on an actor thread are run by the same thread. Other
+	 * threads spread their timeouts over the actor threads. If the system has
+	 * no actor threads, the timeouts are run by the scheduling thread when it
+	 * processes the system.
+	 * 
+	 * Pending timeouts are not counted as work by {@link #isQuiescent()} and
+	 * are discarded on shutdown.
+	 * 
+	 * @return handle to cancel the timeout, in constant time
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		return addTimeout(task, unit.toNanos(delay), 0);
+	}
+
+	/**
+	 * Run a task periodically, first after the initial delay and then once
+	 * each period, until cancelled. Runs missed while the thread was busy are
+	 * caught up one per tick. See {@link #schedule(Runnable, long, TimeUnit)}.
+	 */
+	public Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("Period must be positive: " + period);
+		}
+		return addTimeout(task, unit.toNanos(initialDelay), unit.toNanos(period));
+	}
+
+	private Timeout addTimeout(Runnable task, long delay, long period) {
+		if (closed) {
+			throw new IllegalStateException("Actor system is shut down");
+		}
+		ActorThreadContext context = getThreadContext();
+		ActorThreadContext destination = context;
+		if (virtualCarrier != null) {
+			destination = virtualTimers();
+		} else if (!context.worker) {
+			ActorThreadContext[] w = workers;
+			if (w.length > 0) {
+				destination = w[(nextWorker.getAndIncrement() & Integer.MAX_VALUE) % w.length];
+			}
+		}
+		Timeout timeout = destination.timers.add(task, delay, period);
+		if (destination != context) {
+			// Limit the park of the thread to the next tick
+			wakeUp(destination);
+		}
+		return timeout;
+	}
+
+	private ActorThreadContext virtualTimers() {
+		ActorThreadContext timers = virtualTimers;
+		if (timers == null) {
+			synchronized (threadContexts) {
+				timers = virtualTimers;
+				if (timers == null) {
+					Thread thread = virtualThreads.newThread(new Runnable() {
+						@Override
+						public void run() {
+							localContext.set(virtualTimers);
+							try {
+								process(ProcessType.UNTIL_SHUTDOWN);
+							} catch (InterruptedException e) {
+								// Just complete thread after clearing interrupted flag
+								Thread.interrupted();
+							}
+						}
+					});
+					virtualTimers = timers = createThreadContext(thread);
+					thread.start();
+				}
+			}
+		}
+		return timers;
+	}
+
+	private ActorThreadContext createThreadContext(Thread thread) {
+		return createThreadContext(thread, -1);
+	}
+
+	private ActorThreadContext createThreadContext(Thread thread, int cpu) {
+		ActorThreadContext context = new ActorThreadContext(this, thread, cpu);
+		if (!context.lane) {
+			threadContexts.put(thread, context);
+		}
+		synchronized (threadContexts) {
+			ActorThreadContext[] c = Arrays.copyOf(contexts, contexts.length + 1);
+			c[c.length - 1] = context;
+			contexts = c;
+
+			if (context.worker) {
+				ActorThreadContext[] w = Arrays.copyOf(workers, workers.length + 1);
+				w[w.length - 1] = context;
+				context.workerIndex = w.length - 1;
+				workers = w;
+			}
 		}
 		return context;
 	}
 
+	private ActorThreadContext getThreadContext() {
+		Thread thread = Thread.currentThread();
+		if (thread instanceof ActorThread && ((ActorThread) thread).system == this) {
+			return ((ActorThread) thread).context;
+		}
+		return localContext.get();
+	}
+
+	private ActorThreadContext getThreadContext(Thread thread) {
+		if (thread instanceof ActorThread && ((ActorThread) thread).system == this) {
+			return ((ActorThread) thread).context;
+		}
+		return threadContexts.get(thread);
+	}
+
 	/**
 	 * How is the messages sent to an actor processed in expected order.
 	 * <ul>
-	 * <li>If destination actor is assigned to current thread<br>
-	 * => Post job on thread queue</li>
+	 * <li>If destination actor is assigned<br>
+	 * => Post the message in the actor mailbox and schedule the actor on the
+	 * thread it is assigned to, unless it is already scheduled</li>
 	 * <li>If destination actor is unassigned<br>
-	 * <ul>
-	 * <li>If destination actor is assigned to current thread<br>
-	 * => Post job on thread queue</li>
-	 * <li>If destination actor is assigned to current thread<br>
-	 * => Post job on thread queue</li>
-	 * </ul>
-	 * </li>
-	 * <li>If destination actor is assigned to another thread<br>
-	 * => Send locally queued messages on the destination actor followed by this
-	 * message</li>
-	 * <li>When receiving a assignment announcement<br>
-	 * => Send locally queued messages on the assigned actor
-	 * <li>Possible optimization<br>
-	 * => When you are sure an actor has not been shared with other thread local
-	 * assignment without announcement is safe</li>
+	 * => Post the message in the actor mailbox, where it waits until the actor
+	 * is assigned</li>
+	 * <li>When assigning an actor with waiting messages<br>
+	 * => Schedule the actor on the thread it is assigned to</li>
 	 * 
 	 * </ul>
 	 * 
+	 * The messages of all senders wait in the mailbox of the actor itself, so
+	 * the assignment hands them all over at once. Either the assigning thread
+	 * or the sender posting to the empty mailbox schedules the actor, see
+	 * {@link ActorQueue#claimUnscheduled()}.
+	 * 
+	 * An actor scheduled on a thread may be stolen by an idle thread as long as
+	 * it is not executing. The mailbox follows the actor so the order of the
+	 * messages is kept.
+	 * 
+	 * An actor with a bounded mailbox is assigned on the first message so all
+	 * messages pass the bound. The {@link MailboxOverflow} policy is applied
+	 * when the mailbox is full.
+	 * 
+	 * @param actor
 	 * @param a
+	 * @throws MailboxFullException
+	 *             if the mailbox is full and the policy is
+	 *             {@link MailboxOverflow#FAIL} or the sender is interrupted
+	 *             while blocked
+	 * @throws IllegalStateException
+	 *             if the actor system is shut down or the actor is stopped
 	 */
-	public static void add(Action a) {
+	public void add(ActorQueue actor, Action a) {
+		if (closed) {
+			throw new IllegalStateException("Actor system is shut down");
+		}
+		if (actor.isStopped()) {
+			throw new IllegalStateException("Actor is stopped: " + actor);
+		}
+
 		ActorThreadContext context = getThreadContext();
 
 		// System.out.println("ADD #" + a.hashCode());
 
-		Thread destinationThread = a.getActorRef().getAssignedThread();
+		boolean traced = false;
+		if (context.traceId != 0) {
+			a.setTrace(context.traceId, nextSpanId(context), context.spanId);
+			traced = true;
+		} else if (traceSampling > 0 && ++context.untracedSends >= traceSampling) {
+			context.untracedSends = 0;
+			long span = nextSpanId(context);
+			a.setTrace(span, span, 0);
+			traced = true;
+		}
+		if (metricsEnabled) {
+			a.setSentNanos(System.nanoTime());
+			context.metrics.of(actor.getClassIndex()).sent++;
+		} else if (traced) {
+			a.setSentNanos(System.nanoTime());
+		}
+		FlightEvents.send(this, actor, a);
 
-		if (destinationThread == null) {
-			destinationThread = processAnnouncement(context, a.getActorRef());
+		Thread destinationThread = actor.getActor().getAssignedThread();
+
+		if (destinationThread == null && (actor.getCapacity() > 0 || context.foreign || virtualCarrier != null)) {
+			destinationThread = assignOnSend(context, actor);
 		}
 
 		if (destinationThread == null) {
-			Map<ActorRef, Collection<Action>> actorQueues = context.actorQueuedActions;
-
-			Collection<Action> actorQueue = actorQueues.get(a.getActorRef());
-			if (actorQueue == null) {
-				actorQueues.put(a.getActorRef(), actorQueue = new LinkedList<Action>());
+			context.sent();
+			if (actor.post(a)) {
+				actor.markUnscheduled();
+				// Assigned after the first look up
+				if (actor.getActor().getAssignedThread() != null && actor.claimUnscheduled()) {
+					schedule(context, actor);
+				}
+			}
+		} else if (a.isPriority() || actor.getCapacity() == 0) {
+			context.sent();
+			if (actor.post(a)) {
+				schedule(context, actor);
 			}
-			actorQueue.add(a);
-		} else if (destinationThread == Thread.currentThread()) {
-			context.actions.add(a);
 		} else {
-			// XXX: Accessing other thread context. Looks odd even this is
-			// according to design and perfectly thread safe operation.
-			BlockingQueue<Action> remoteActions = threadContexts.get(destinationThread).actions;
-			Collection<Action> queuedActions = context.actorQueuedActions.remove(a.getActorRef());
-			if (queuedActions != null) {
-				for (Action queued : queuedActions) {
-					remoteActions.add(queued);
+			boolean dropOldest = false;
+			int reserved = actor.reserve();
+			while (reserved == ActorQueue.FULL) {
+				switch (actor.getOverflow()) {
+				case FAIL:
+					rejected(context, actor);
+					throw new MailboxFullException("Mailbox full: " + actor);
+				case DROP_NEWEST:
+					rejected(context, actor);
+					a.discard(new MailboxFullException("Mailbox full, dropped newest: " + actor));
+					return;
+				case DROP_OLDEST:
+					dropOldest = true;
+					reserved = actor.reserveOverCapacity();
+					break;
+				case BLOCK:
+					if (awaitCapacity(context, actor)) {
+						// Other senders may take the room first
+						reserved = actor.reserve();
+					} else {
+						reserved = actor.reserveOverCapacity();
+					}
+					break;
 				}
 			}
-			remoteActions.add(a);
+			context.sent();
+			actor.postReserved(a);
+			if (reserved == 0) {
+				schedule(context, actor);
+			}
+			if (dropOldest) {
+				actor.requestDropOldest();
+			}
 		}
 	}
 
-	private static Thread processAnnouncement(ActorThreadContext context, ActorRef actor) {
-		for (;;) {
-			Announcement announcement = context.assignmentAnnouncementsFollower.poll();
-			if (announcement != null) {
-				ActorRef announcedActor = announcement.getActor();
-				Thread announcedThread = announcement.getThread();
-
-				// System.out.println("Received announcment[" +
-				// context.thread.getName() + "] A#" + announcedActor.hashCode()
-				// + " -> " + announcedThread.getName());
-
-				if (context.thread == announcedThread) {
-					context.assignmentCount++;
+	/**
+	 * Assign an unassigned actor on send. Used for actors with
+	 * a bounded mailbox, for actors sent to from the threads of another
+	 * system, that never process this system, and for all actors executed on
+	 * virtual threads.
+	 * 
+	 * @return the thread the actor is assigned to
+	 */
+	private Thread assignOnSend(ActorThreadContext context, ActorQueue actor) {
+		Thread thread = context.thread;
+		Thread carrier = virtualCarrier;
+		if (carrier != null) {
+			if (actor.getActor().setAssignedThread(carrier)) {
+				assigned(context, actor);
+				scheduleAssigned(context, actor);
+				return carrier;
+			}
+			return actor.getActor().getAssignedThread();
+		} else if (context.foreign) {
+			thread = idleQueue.follower().poll();
+			if (thread == null) {
+				ActorThreadContext[] w = workers;
+				if (w.length == 0) {
+					// XXX: No thread in this system to assign to. The action
+					// is queued until the actor is assigned by the thread
+					// that created it.
+					return null;
 				}
+				thread = w[(nextWorker.getAndIncrement() & Integer.MAX_VALUE) % w.length].thread;
+			}
+		}
+		ActorRef ref = actor.getActor();
+		if (ref.setAssignedThread(thread)) {
+			assigned(context, actor);
+			scheduleAssigned(context, actor);
+			return thread;
+		}
+		return ref.getAssignedThread();
+	}
 
-				announcedActor.updateAssignedThread(announcedThread);
+	private void rejected(ActorThreadContext context, ActorQueue actor) {
+		context.rejectedCount++;
+		actor.rejected();
+		if (metricsEnabled) {
+			context.metrics.of(actor.getClassIndex()).rejected++;
+		}
+	}
 
-				Collection<Action> queuedActions = context.actorQueuedActions.remove(announcedActor);
-				if (queuedActions != null) {
-					BlockingQueue<Action> remoteActions = threadContexts.get(announcedThread).actions;
-					for (Action queued : queuedActions) {
-						remoteActions.add(queued);
+	private void assigned(ActorThreadContext context, ActorQueue actor) {
+		context.assignmentCount++;
+		if (metricsEnabled) {
+			context.metrics.of(actor.getClassIndex()).assigned++;
+		}
+		FlightEvents.assign(this, actor);
+	}
+
+	/**
+	 * Wait for a full mailbox to get room. The current thread helps processing
+	 * its own ready actors meanwhile as the actor may be assigned to it.
+	 * 
+	 * An actor sending to itself, or any send while already blocked, is let
+	 * through over the bound as the thread would otherwise wait for itself.
+	 * 
+	 * @return {@code true} if the mailbox got room, {@code false} if the send
+	 *         is let through
+	 */
+	private boolean awaitCapacity(ActorThreadContext context, ActorQueue actor) {
+		if (context.blocked || actor == context.executing) {
+			return false;
+		}
+		context.blocked = true;
+		try {
+			while (actor.isFull()) {
+				if (process(context, false) != ProcessStatus.PROCESSED) {
+					LockSupport.parkNanos(actor, BLOCKED_PARK_NANOS);
+					if (Thread.interrupted()) {
+						throw new InterruptedException();
 					}
 				}
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			rejected(context, actor);
+			throw new MailboxFullException("Interrupted while waiting for room in mailbox: " + actor, e);
+		} finally {
+			context.blocked = false;
+		}
+	}
+
+	/**
+	 * Put the actor on the ready queue of the thread it is assigned to.
+	 */
+	private void schedule(ActorThreadContext context, ActorQueue actor) {
+		Thread destinationThread = actor.getActor().getAssignedThread();
 
-				if (announcedActor == actor) {
-					return announcedThread;
+		if (destinationThread == virtualCarrier) {
+			virtualThreads.newThread(new VirtualRun(actor)).start();
+			return;
+		}
+
+		// XXX: Accessing other thread context. Looks odd even this is
+		// according to design and perfectly thread safe operation.
+		ActorThreadContext destination = destinationThread == context.thread ? context : getThreadContext(destinationThread);
+
+		if (destination != context && threadChannels && context.worker && destination.worker && channel(context, destination).add(actor)) {
+			// The receiver checks its channels after marking itself parked
+			VarHandle.fullFence();
+			wakeUp(destination);
+			return;
+		}
+
+		int backlog = destination.readyActors.add(actor);
+		wakeUp(destination);
+
+		if (backlog > 0) {
+			wakeUpStealer(destination);
+		}
+	}
+
+	/**
+	 * Channel from the thread of the context to the thread of the destination,
+	 * created on the first use.
+	 */
+	private static SpscArrayQueue<ActorQueue> channel(ActorThreadContext context, ActorThreadContext destination) {
+		SpscArrayQueue<ActorQueue>[] outbound = context.outbound;
+		int index = destination.workerIndex;
+		if (index < outbound.length && outbound[index] != null) {
+			return outbound[index];
+		}
+		SpscArrayQueue<ActorQueue> channel = new SpscArrayQueue<>(CHANNEL_CAPACITY);
+		synchronized (destination) {
+			SpscArrayQueue<ActorQueue>[] inbound = Arrays.copyOf(destination.inbound, destination.inbound.length + 1);
+			inbound[inbound.length - 1] = channel;
+			destination.inbound = inbound;
+		}
+		if (index >= outbound.length) {
+			context.outbound = outbound = Arrays.copyOf(outbound, index + 1);
+		}
+		outbound[index] = channel;
+		return channel;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static SpscArrayQueue<ActorQueue>[] newChannels(int length) {
+		return new SpscArrayQueue[length];
+	}
+
+	/**
+	 * Move the actors in the channels to the thread of the context to its
+	 * ready queue, starting with the channel after the one last drained
+	 * first.
+	 */
+	private void drainChannels(ActorThreadContext context) {
+		SpscArrayQueue<ActorQueue>[] inbound = context.inbound;
+		int n = inbound.length;
+		if (n == 0) {
+			return;
+		}
+		int moved = 0;
+		int first = context.nextInbound;
+		for (int i = 0; i < n; i++) {
+			moved += inbound[(first + i) % n].drain(context.toReady, CHANNEL_CAPACITY);
+		}
+		context.nextInbound = (first + 1) % n;
+		if (moved > 1) {
+			wakeUpStealer(context);
+		}
+	}
+
+	/**
+	 * @return {@code true} if actors are waiting on the ready queue or in the
+	 *         channels to the thread of the context
+	 */
+	private static boolean hasReady(ActorThreadContext context) {
+		if (!context.readyActors.isEmpty()) {
+			return true;
+		}
+		SpscArrayQueue<ActorQueue>[] inbound = context.inbound;
+		if (inbound.length == 0) {
+			return false;
+		}
+		// Orders the mark as parked before reading the channels
+		VarHandle.fullFence();
+		for (SpscArrayQueue<ActorQueue> channel : inbound) {
+			if (!channel.isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Unpark the thread of the context if it is parked waiting for actions.
+	 * Must be called after the actions are added to the queue.
+	 */
+	private void wakeUp(ActorThreadContext context) {
+		if (context.parked) {
+			LockSupport.unpark(context.thread);
+		}
+	}
+
+	/**
+	 * Unpark one parked actor thread, other than the thread of the context, to
+	 * let it steal actors waiting on the context.
+	 */
+	private void wakeUpStealer(ActorThreadContext context) {
+		if (parkedThreads.get() > 0) {
+			for (ActorThreadContext c : workers) {
+				if (c != context && c.parked && !c.awaitingQuiescence) {
+					LockSupport.unpark(c.thread);
+					return;
 				}
-			} else {
-				return null;
 			}
 		}
 	}
 
-	private static void assignLocalActor(ActorThreadContext context) {
+	/**
+	 * Schedule an actor just assigned if actions were posted to it while
+	 * unassigned.
+	 */
+	private void scheduleAssigned(ActorThreadContext context, ActorQueue actor) {
+		if (actor.claimUnscheduled()) {
+			schedule(context, actor);
+		}
+	}
+
+	private void assignLocalActor(ActorThreadContext context) {
 		for (;;) {
-			ActorRef actor = context.instantiations.pollFirst();
+			ActorQueue actor = context.instantiations.pollFirst();
 			if (actor == null) {
 				return;
 			}
 			// XXX: Current design is only assigning from local thread
-			if (actor.setAssignedThread(Thread.currentThread())) {
-				// Local assignment should not trigger announcement
-
-				context.assignmentCount++;
-
-				Collection<Action> queuedActions = context.actorQueuedActions.remove(actor);
-				if (queuedActions != null) {
-					for (Action queued : queuedActions) {
-						context.actions.add(queued);
-					}
-				}
-
+			if (actor.getActor().setAssignedThread(Thread.currentThread())) {
+				assigned(context, actor);
+				scheduleAssigned(context, actor);
 				return;
 			}
 		}
 	}
 
-	private static boolean assignActorsToIdleThreads(ActorThreadContext context) {
+	private boolean assignActorsToIdleThreads(ActorThreadContext context) {
 		while (!context.instantiations.isEmpty()) {
-			Thread idleThread = idleQueue.follower().poll();
+			ActorThreadContext near = context.cpu >= 0 ? pollIdleNeighbour(context) : null;
+			Thread idleThread = near != null ? near.thread : idleQueue.follower().poll();
 			if (idleThread == null) {
 				return true;
 			}
-			ActorRef a = context.instantiations.pollLast();
+			ActorQueue a = context.instantiations.pollLast();
 			if (a == null) {
+				if (near != null) {
+					near.idle = 1;
+				}
 				return false;
 			}
-			if (!a.setAssignedThread(idleThread)) {
+			if (!a.getActor().setAssignedThread(idleThread)) {
 				// No assignment happened - return thread to idle pool
-				idleQueue.add(idleThread);
+				if (near != null) {
+					near.idle = 1;
+				} else {
+					idleQueue.add(idleThread);
+				}
 			} else {
-				assignmentAnnouncements.add(new Announcement(a, idleThread));
 				// System.out.println("Assigned to idle: A#" + a.hashCode() +
 				// " -> " + idleThread.getName());
+
+				assigned(context, a);
+				scheduleAssigned(context, a);
 			}
 		}
 		return false;
 	}
 
 	/**
+	 * Pick the idle actor thread pinned closest to the CPU of the current
+	 * thread.
+	 * 
+	 * @return the context of the picked thread or {@code null} if no thread
+	 *         is idle
+	 */
+	private ActorThreadContext pollIdleNeighbour(ActorThreadContext context) {
+		ActorThreadContext[] w = workers;
+		if (context.neighboursOf != w) {
+			context.neighbours = sortByDistance(context, w);
+			context.neighboursOf = w;
+		}
+		for (ActorThreadContext c : context.neighbours) {
+			if (c.idle != 0 && ActorThreadContext.idleUpdater.compareAndSet(c, 1, 0)) {
+				return c;
+			}
+		}
+		return null;
+	}
+
+	private static ActorThreadContext[] sortByDistance(final ActorThreadContext context, ActorThreadContext[] workers) {
+		CpuTopology topology = CpuTopology.get();
+		ActorThreadContext[] others = new ActorThreadContext[workers.length];
+		// Distance in the high bits, so the order is kept if a thread clears
+		// its CPU while sorting
+		long[] keys = new long[workers.length];
+		int n = 0;
+		for (ActorThreadContext c : workers) {
+			if (c != context) {
+				keys[n] = ((long) topology.distance(context.cpu, c.cpu) << 32) | n;
+				others[n++] = c;
+			}
+		}
+		Arrays.sort(keys, 0, n);
+		ActorThreadContext[] sorted = new ActorThreadContext[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = others[(int) keys[i]];
+		}
+		return sorted;
+	}
+
+	/**
+	 * Take a scheduled actor, that is not executing, from the tail of the
+	 * ready queue of another actor thread and assign it to the current thread.
+	 * Only the actor threads of the system steal and are stolen from, other
+	 * threads process their own actors when they choose to.
+	 * 
+	 * @return the stolen actor or {@code null} if no actor is waiting on any
+	 *         other thread
+	 */
+	private ActorQueue steal(ActorThreadContext context) {
+		for (ActorThreadContext victim : workers) {
+			if (victim != context) {
+				ActorQueue actor = victim.readyActors.pollLast();
+				if (actor != null) {
+					ActorRef ref = actor.getActor();
+					ref.reassignThread(ref.getAssignedThread(), context.thread);
+
+					// System.out.println("Stolen: A#" + ref.hashCode() + " "
+					// + victim.thread.getName() + " -> "
+					// + context.thread.getName());
+
+					context.stolenCount++;
+					if (metricsEnabled) {
+						context.metrics.of(actor.getClassIndex()).stolen++;
+					}
+					return actor;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A single step executes up to {@link #getThroughput()} actions in a row on
+	 * one ready actor. A {@link ProcessType#BATCH} executes up to
+	 * {@value #DEFAULT_BATCH_SIZE} actions, see
+	 * {@link #processBatch(int, long)}.
+	 * 
 	 * @param type
 	 * @return {@code true} if more work is to be processed
 	 * @throws InterruptedException
 	 */
-	public static boolean process(ProcessType type) throws InterruptedException {
+	public boolean process(ProcessType type) throws InterruptedException {
 		ActorThreadContext context = getThreadContext();
 
 		switch (type) {
@@ -333,6 +1364,9 @@ public class ActorSystem implements AutoCloseable {
 		case WAIT_SINGLE:
 			return process(context, true) == ProcessStatus.PROCESSED;
 
+		case BATCH:
+			return processBatch(context, DEFAULT_BATCH_SIZE, 0) > 0;
+
 		case UNTIL_NO_WORK:
 			while (process(context, false) == ProcessStatus.PROCESSED) {
 				// Empty
@@ -350,39 +1384,468 @@ public class ActorSystem implements AutoCloseable {
 
 	}
 
-	private static ProcessStatus process(ActorThreadContext context, boolean block) throws InterruptedException {
+	/**
+	 * Execute ready actors on the current thread without waiting. The
+	 * timeouts and assignments are handled when the batch starts, when
+	 * the ready queue runs empty and every {@value #HOUSEKEEPING_INTERVAL}
+	 * actions, instead of before each actor.
+	 * 
+	 * @param maxActions
+	 *            max number of actions to execute
+	 * @param maxNanos
+	 *            time budget, checked between actors, or zero for no limit
+	 * @return number of actions executed
+	 */
+	public int processBatch(int maxActions, long maxNanos) {
+		if (maxActions < 1) {
+			throw new IllegalArgumentException("Max actions must be positive: " + maxActions);
+		}
+		if (maxNanos < 0) {
+			throw new IllegalArgumentException("Negative time budget: " + maxNanos);
+		}
+		return processBatch(getThreadContext(), maxActions, maxNanos);
+	}
+
+	private int processBatch(ActorThreadContext context, int maxActions, long maxNanos) {
+		long deadline = maxNanos > 0 ? System.nanoTime() + maxNanos : 0;
+		int drained = 0;
+		int sinceHousekeeping = HOUSEKEEPING_INTERVAL;
+		boolean housekept = false;
+		while (drained < maxActions) {
+			if (sinceHousekeeping >= HOUSEKEEPING_INTERVAL) {
+				housekeeping(context);
+				sinceHousekeeping = 0;
+				housekept = true;
+			}
+
+			ActorQueue actor = context.readyActors.poll();
+			if (actor == null) {
+				if (housekept) {
+					notifyQuiescenceWaiters(context);
+					break;
+				}
+				sinceHousekeeping = HOUSEKEEPING_INTERVAL;
+				continue;
+			}
+			housekept = false;
+
+			int executed = execute(context, actor, Math.min(throughput, maxActions - drained));
+			drained += executed;
+			sinceHousekeeping += executed;
+
+			if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+				break;
+			}
+		}
+		return drained;
+	}
+
+	/**
+	 * Run expired timeouts and assign new actors.
+	 * 
+	 * @return {@code true} if new actors remains unassigned on the thread
+	 */
+	private boolean housekeeping(ActorThreadContext context) {
+		if (context.timers.hasTimeouts()) {
+			context.timers.advance(System.nanoTime());
+		}
+
+		drainChannels(context);
+
+		if (context.readyActors.isEmpty()) {
+			assignLocalActor(context);
+		}
+
+		return assignActorsToIdleThreads(context);
+	}
+
+	private ProcessStatus process(ActorThreadContext context, boolean block) throws InterruptedException {
 		boolean announcedAsIdle = false;
+		boolean idleNotified = false;
+		int idleSpins = 0;
+		FlightEvents.Idle idle = null;
 		wait_loop: for (;;) {
-			processAnnouncement(context, null);
-
-			if (context.actions.isEmpty()) {
-				assignLocalActor(context);
+			if (closed) {
+				FlightEvents.endIdle(idle, this, announcedAsIdle);
+				return ProcessStatus.CLOSED;
 			}
 
-			boolean unassignedActorsOnThread = assignActorsToIdleThreads(context);
+			boolean unassignedActorsOnThread = housekeeping(context);
 
-			Action a = context.actions.poll();
-			if (a == null) {
-				if (block || unassignedActorsOnThread || !context.actorQueuedActions.isEmpty()) {
+			ActorQueue actor = context.readyActors.poll();
+			if (actor == null && block && context.worker) {
+				actor = steal(context);
+			}
+			if (actor == null) {
+				if (!idleNotified) {
+					idleNotified = true;
+					notifyQuiescenceWaiters(context);
+				}
+				if (block || unassignedActorsOnThread) {
+					if (idle == null) {
+						idle = FlightEvents.beginIdle();
+					}
 					if (!announcedAsIdle && block) {
 						announcedAsIdle = true;
 						// System.out.println("IDLE " +
 						// context.thread.getName());
 						idleQueue.add(context.thread);
+						if (context.cpu >= 0) {
+							context.idle = 1;
+						}
+					}
+					if (idleSpins < IDLE_SPINS) {
+						idleSpins++;
+					} else {
+						park(context, unassignedActorsOnThread);
+						if (idle != null) {
+							idle.parks++;
+						}
 					}
-					Thread.sleep(1);
 					continue wait_loop;
 				}
+				FlightEvents.endIdle(idle, this, announcedAsIdle);
 				return ProcessStatus.EMPTY;
 			}
-			announcedAsIdle = false;
+			if (idle != null) {
+				FlightEvents.endIdle(idle, this, announcedAsIdle);
+				idle = null;
+			}
+			if (announcedAsIdle) {
+				announcedAsIdle = false;
+				context.idle = 0;
+			}
+			idleNotified = false;
+
+			if (execute(context, actor, throughput) == 0) {
+				continue wait_loop;
+			}
+
+			return ProcessStatus.PROCESSED;
+		}
+	}
+
+	/**
+	 * Execute actions in a row on a ready actor taken from a ready queue and
+	 * put it back if actions remain.
+	 * 
+	 * @param limit
+	 *            max number of actions to execute
+	 * @return number of actions executed
+	 */
+	private int execute(ActorThreadContext context, ActorQueue actor, int limit) {
+		int executed = 0;
+		int dropped = 0;
+		int discarded = 0;
+		Throwable failure = null;
+		ActorQueue outer = context.executing;
+		context.executing = actor;
+
+		// Actors spawned by the actor are bound to this system even when
+		// executed by a thread of another system or a non-actor thread
+		ActorSystem outerSystem = null;
+		if (!context.worker) {
+			outerSystem = currentSystem.get();
+			currentSystem.set(this);
+		}
+		boolean stopped = actor.isStopped();
+		ThreadMetrics.ClassMetrics metrics = null;
+		long started = 0;
+		if (metricsEnabled) {
+			metrics = context.metrics.of(actor.getClassIndex());
+			metrics.mailboxDepth.record(actor.size());
+			started = System.nanoTime();
+		}
+		boolean traced = FlightEvents.isExecuteEnabled();
+		long outerTraceId = context.traceId;
+		long outerSpanId = context.spanId;
+		while (executed < limit) {
+			Action a = actor.poll();
+			if (a == null) {
+				// Empty or the next action is not yet linked by producer
+				break;
+			}
+
+			if (stopped) {
+				// Sent before the actor was stopped
+				discarded++;
+				a.discard(new CancellationException("Actor stopped: " + actor));
+				continue;
+			}
+
+			if (!a.isPriority() && actor.dropOldest()) {
+				// System.out.println("DROP #" + a.hashCode());
+				dropped++;
+				a.discard(new MailboxFullException("Mailbox full, dropped oldest: " + actor));
+				continue;
+			}
 
 			// System.out.println("RUN #" + a.hashCode());
 
-			context.actionCount++;
-			a.execute();
+			executed++;
+			FlightEvents.Execute event = traced ? FlightEvents.beginExecute() : null;
+			// Sends while executing join the trace of the action, if any
+			context.traceId = a.getTraceId();
+			context.spanId = a.getSpanId();
+			long hopStarted = context.traceId != 0 ? System.nanoTime() : 0;
+			try {
+				a.execute();
+			} catch (Throwable t) {
+				failure = t;
+			}
+			if (hopStarted != 0) {
+				traceBuffer(context).record(actor, a, hopStarted, System.nanoTime());
+			}
+			if (event != null) {
+				FlightEvents.endExecute(event, this, actor, a, failure != null);
+			}
+			if (metrics != null) {
+				long now = System.nanoTime();
+				if (a.getSentNanos() != 0) {
+					metrics.queueingDelay.record(started - a.getSentNanos());
+				}
+				metrics.serviceTime.record(now - started);
+				started = now;
+			}
+			if (failure != null) {
+				break;
+			}
+		}
+		if (!context.worker) {
+			// Keep the thread local entry to not allocate on next set
+			currentSystem.set(outerSystem);
+		}
+		context.traceId = outerTraceId;
+		context.spanId = outerSpanId;
+		context.executing = outer;
+		context.actionCount += executed;
+		if (dropped > 0) {
+			context.rejectedCount += dropped;
+			actor.rejected(dropped);
+		}
+		if (executed + dropped + discarded > 0) {
+			context.completed(executed + dropped + discarded);
+		}
+
+		if (metrics != null) {
+			metrics.executed += executed;
+			metrics.rejected += dropped;
+		}
 
-			return ProcessStatus.PROCESSED;
+		if (failure != null) {
+			// Released when the supervisor has decided
+			context.failureCount++;
+			if (metrics != null) {
+				metrics.failures++;
+			}
+			actor.suspend(executed + dropped + discarded);
+			Supervision.route(actor, actor, failure);
+			return executed;
+		}
+
+		if (actor.release(executed + dropped + discarded)) {
+			if (context.lane) {
+				context.runAgain = true;
+			} else {
+				context.readyActors.add(actor);
+			}
+		}
+		return executed;
+	}
+
+	private static TraceBuffer traceBuffer(ActorThreadContext context) {
+		TraceBuffer traces = context.traces;
+		if (traces == null) {
+			traces = new TraceBuffer(context.thread.getName(), TRACE_BUFFER_SIZE);
+			context.traces = traces;
+		}
+		return traces;
+	}
+
+	/**
+	 * Resume an actor suspended after a failure, as decided by its supervisor.
+	 * The actions waiting in the mailbox are discarded, unless resumed with
+	 * {@link Directive#RESUME}, failing their futures with a
+	 * {@link CancellationException}.
+	 */
+	void resume(ActorQueue actor, Directive directive) {
+		ActorThreadContext context = getThreadContext();
+		int released = actor.resume();
+		if (directive != Directive.RESUME) {
+			if (directive == Directive.STOP) {
+				actor.stop();
+			}
+			String reason = (directive == Directive.STOP ? "Actor stopped: " : "Actor restarted: ") + actor;
+			int discarded = 0;
+			Action a;
+			while ((a = actor.poll()) != null) {
+				discarded++;
+				a.discard(new CancellationException(reason));
+			}
+			if (discarded > 0) {
+				context.completed(discarded);
+			}
+			released += discarded;
+		}
+		if (actor.release(released)) {
+			schedule(context, actor);
+		}
+	}
+
+	/**
+	 * Run of a scheduled actor on a virtual thread, until its mailbox is
+	 * empty. A context is lent from the idle lanes for the run, since sending
+	 * and executing need a context owned by the thread.
+	 */
+	private final class VirtualRun implements Runnable {
+		private final ActorQueue actor;
+
+		VirtualRun(ActorQueue actor) {
+			this.actor = actor;
+		}
+
+		@Override
+		public void run() {
+			ActorThreadContext context = idleLanes.poll();
+			if (context == null) {
+				context = createThreadContext(virtualCarrier);
+			}
+			localContext.set(context);
+			try {
+				for (;;) {
+					context.runAgain = false;
+					execute(context, actor, throughput);
+					if (!context.runAgain) {
+						break;
+					}
+					// Let other virtual threads use the carrier between runs
+					Thread.yield();
+				}
+			} finally {
+				localContext.remove();
+				idleLanes.offer(context);
+				notifyQuiescenceWaiters(context);
+			}
+		}
+	}
+
+	/**
+	 * Park current thread until an actor is put on its ready queue or another
+	 * thread has actors to steal. If there are new actors waiting to
+	 * be assigned, or timeouts, the park is limited in time.
+	 */
+	private void park(ActorThreadContext context, boolean pending) throws InterruptedException {
+		context.parked = true;
+		parkedThreads.incrementAndGet();
+		try {
+			if (!hasReady(context)) {
+				if (pending) {
+					LockSupport.parkNanos(context, PENDING_PARK_NANOS);
+				} else if (context.timers.hasTimeouts()) {
+					LockSupport.parkNanos(context, TIMER_TICK_NANOS);
+				} else {
+					LockSupport.park(context);
+				}
+			}
+		} finally {
+			parkedThreads.decrementAndGet();
+			context.parked = false;
+		}
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * Check if all actions sent on any thread are executed. Counters of all
+	 * threads are summed in two waves, completed before sent, and the system
+	 * is quiescent if all four sums are equal. The counters only grow so an
+	 * action sent during the waves is detected.
+	 */
+	public boolean isQuiescent() {
+		long completed = sumCompleted();
+		long sent = sumSent();
+		if (completed != sent) {
+			return false;
+		}
+		return sumCompleted() == sent && sumSent() == sent;
+	}
+
+	private long sumSent() {
+		long sum = 0;
+		for (ActorThreadContext c : contexts) {
+			sum += c.sentCount;
+		}
+		return sum;
+	}
+
+	private long sumCompleted() {
+		long sum = 0;
+		for (ActorThreadContext c : contexts) {
+			sum += c.completedCount;
+		}
+		return sum;
+	}
+
+	/**
+	 * Wait until all actions sent to any actor are executed. The current
+	 * thread executes the actors assigned to it while waiting.
+	 * 
+	 * @return {@code true} if quiescent, {@code false} if the timeout elapsed
+	 * @throws IllegalStateException
+	 *             if called from an executing actor, as its own action would
+	 *             never complete
+	 */
+	public boolean awaitQuiescence(long timeout, TimeUnit unit) throws InterruptedException {
+		ActorThreadContext context = getThreadContext();
+		if (context.executing != null) {
+			throw new IllegalStateException("Can not await quiescence from within an actor");
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		context.awaitingQuiescence = true;
+		quiescenceWaiters.incrementAndGet();
+		try {
+			for (;;) {
+				while (processBatch(context, DEFAULT_BATCH_SIZE, 0) > 0) {
+					// Empty
+				}
+				if (isQuiescent()) {
+					return true;
+				}
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+
+				context.parked = true;
+				try {
+					if (!hasReady(context)) {
+						LockSupport.parkNanos(context, Math.min(remaining, QUIESCENCE_PARK_NANOS));
+					}
+				} finally {
+					context.parked = false;
+				}
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+			}
+		} finally {
+			quiescenceWaiters.decrementAndGet();
+			context.awaitingQuiescence = false;
+		}
+	}
+
+	/**
+	 * Unpark threads waiting for quiescence. Called by threads going idle.
+	 */
+	private void notifyQuiescenceWaiters(ActorThreadContext context) {
+		if (quiescenceWaiters.get() > 0) {
+			for (ActorThreadContext c : contexts) {
+				if (c != context && c.awaitingQuiescence) {
+					LockSupport.unpark(c.thread);
+				}
+			}
 		}
 	}
 
@@ -391,39 +1854,250 @@ public class ActorSystem implements AutoCloseable {
 		shutdown();
 	}
 
+	/**
+	 * Wait until all sent actions are executed and stop the actor threads.
+	 * Stops immediately if the current thread is interrupted.
+	 */
 	public void shutdown() {
-		throw new UnsupportedOperationException("Closed not yet implemented");
+		try {
+			shutdown(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Wait until all sent actions are executed, or the timeout elapses, and
+	 * stop the actor threads. Actions not executed when the timeout elapses
+	 * are discarded. Sending after shutdown fails.
+	 * 
+	 * @return {@code true} if all actions were executed
+	 */
+	public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		boolean drained = false;
+		try {
+			drained = awaitQuiescence(timeout, unit);
+		} finally {
+			closed = true;
+			for (ActorThreadContext c : contexts) {
+				LockSupport.unpark(c.thread);
+			}
+			unregisterMBean();
+		}
+		return drained;
+	}
+
+	public boolean isShutdown() {
+		return closed;
 	}
 
 	private static class ActorThread extends Thread {
-		public ActorThread(String name) {
+		final ActorSystem system;
+		final ActorThreadContext context;
+
+		/**
+		 * CPU taken from the topology for the thread, or -1. Given back when
+		 * the thread exits, even if pinning failed.
+		 */
+		final int acquiredCpu;
+
+		public ActorThread(ActorSystem system, String name, int cpu) {
 			super(name);
+			this.system = system;
+			acquiredCpu = cpu;
+			context = system.createThreadContext(this, cpu);
 		}
 
 		@Override
 		public String toString() {
-			return threadContexts.get(this).toString();
+			return context.toString();
 		}
 
 		@Override
 		public void run() {
 			try {
-				process(ProcessType.UNTIL_SHUTDOWN);
+				if (context.cpu >= 0 && !CpuTopology.pinCurrentThread(context.cpu)) {
+					// Run unpinned, and placed last when looking for idle threads
+					context.pinFailureCount++;
+					context.cpu = -1;
+				}
+				system.process(ProcessType.UNTIL_SHUTDOWN);
 			} catch (InterruptedException e) {
 				// Just complete thread after clearing interrupted flag
 				Thread.interrupted();
+			} finally {
+				if (acquiredCpu >= 0) {
+					CpuTopology.get().releaseCpu(acquiredCpu);
+				}
+			}
+		}
+	}
+
+	public void register(ActorQueue actor) {
+		ActorThreadContext context = getThreadContext();
+		context.instantiationsCount++;
+		if (virtualCarrier == null) {
+			// Virtual thread actors are assigned on send
+			context.instantiations.addFirst(actor);
+		}
+	}
+
+	/**
+	 * Number of actions rejected, dropped or failed, because of full mailboxes.
+	 * Read without synchronization so the value is approximate while actors
+	 * are running.
+	 */
+	public long getRejectedCount() {
+		long count = 0;
+		for (ActorThreadContext c : contexts) {
+			count += c.rejectedCount;
+		}
+		return count;
+	}
+
+	@Override
+	public int getThreadCount() {
+		return workers.length;
+	}
+
+	@Override
+	public ActorMetrics getMetrics() {
+		ActorMetrics total = new ActorMetrics(name == null ? "default" : name);
+		for (ActorMetrics m : getThreadMetrics()) {
+			total.sent += m.sent;
+			total.executed += m.executed;
+			total.assigned += m.assigned;
+			total.stolen += m.stolen;
+			total.rejected += m.rejected;
+			total.failures += m.failures;
+			total.pinFailures += m.pinFailures;
+			total.queueingDelay.add(m.queueingDelay);
+			total.serviceTime.add(m.serviceTime);
+			total.mailboxDepth.add(m.mailboxDepth);
+		}
+		return total;
+	}
+
+	@Override
+	public List<ActorMetrics> getThreadMetrics() {
+		List<ActorMetrics> threads = new ArrayList<>();
+		for (ActorThreadContext c : contexts) {
+			ActorMetrics m = new ActorMetrics(c.thread.getName());
+			m.sent = c.sentCount;
+			m.executed = c.actionCount;
+			m.assigned = c.assignmentCount;
+			m.stolen = c.stolenCount;
+			m.rejected = c.rejectedCount;
+			m.failures = c.failureCount;
+			m.pinFailures = c.pinFailureCount;
+			for (ThreadMetrics.ClassMetrics cm : c.metrics.getClasses()) {
+				if (cm != null) {
+					m.addHistograms(cm);
+				}
+			}
+			threads.add(m);
+		}
+		return threads;
+	}
+
+	@Override
+	public List<ActorMetrics> getActorClassMetrics() {
+		Class<?>[] classes = indexedClasses;
+		ActorMetrics[] byClass = new ActorMetrics[classes.length];
+		for (ActorThreadContext c : contexts) {
+			ThreadMetrics.ClassMetrics[] recorded = c.metrics.getClasses();
+			for (int i = 0; i < recorded.length && i < classes.length; i++) {
+				if (recorded[i] != null) {
+					if (byClass[i] == null) {
+						byClass[i] = new ActorMetrics(classes[i].getName());
+					}
+					byClass[i].addCounters(recorded[i]);
+					byClass[i].addHistograms(recorded[i]);
+				}
+			}
+		}
+		List<ActorMetrics> result = new ArrayList<>();
+		for (ActorMetrics m : byClass) {
+			if (m != null) {
+				result.add(m);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Hops of sampled traces still kept in the trace buffers of the threads,
+	 * ordered by the time they started executing.
+	 * 
+	 * @see #setTraceSampling(int)
+	 * @see TraceHop#criticalPath(List, long)
+	 */
+	public List<TraceHop> getTrace() {
+		List<TraceHop> hops = new ArrayList<>();
+		for (ActorThreadContext c : contexts) {
+			TraceBuffer traces = c.traces;
+			if (traces != null) {
+				traces.copyTo(hops);
+			}
+		}
+		hops.sort(new Comparator<TraceHop>() {
+			@Override
+			public int compare(TraceHop a, TraceHop b) {
+				return Long.compare(a.getStartNanos(), b.getStartNanos());
+			}
+		});
+		return hops;
+	}
+
+	/**
+	 * Write the hops of {@link #getTrace()} in the Chrome trace event format,
+	 * opened by Perfetto and {@code chrome://tracing}.
+	 */
+	public void exportTrace(Writer out) throws IOException {
+		TraceExport.write(getTrace(), out);
+	}
+
+	/**
+	 * Register the system in the platform MBean server, as
+	 * {@code net.pnyxter.actor:type=ActorSystem,name=<name>}. Unregistered on
+	 * shutdown.
+	 */
+	public synchronized ObjectName registerMBean() {
+		if (mbeanName == null) {
+			try {
+				ObjectName objectName = new ObjectName("net.pnyxter.actor:type=ActorSystem,name=" + ObjectName.quote(name == null ? "default" : name));
+				ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+				mbeanName = objectName;
+			} catch (JMException e) {
+				throw new IllegalStateException("Failed to register actor system MBean", e);
 			}
 		}
+		return mbeanName;
 	}
 
-	public static void register(ActorRef actor) {
-		getThreadContext().instantiationsCount++;
-		getThreadContext().instantiations.addFirst(actor);
+	private synchronized void unregisterMBean() {
+		if (mbeanName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+			} catch (JMException e) {
+				// XXX: Already unregistered by someone else
+			}
+			mbeanName = null;
+		}
 	}
 
-	public static void statistics() {
-		for (ActorThreadContext c : threadContexts.values()) {
+	/**
+	 * Print the metrics of each thread, and of each actor class if enabled.
+	 */
+	public void statistics() {
+		System.out.println((name == null ? "default" : name) + ":");
+		for (ActorThreadContext c : contexts) {
 			System.out.println(c);
 		}
+		if (metricsEnabled) {
+			for (ActorMetrics m : getActorClassMetrics()) {
+				System.out.println(m);
+			}
+		}
 	}
 }
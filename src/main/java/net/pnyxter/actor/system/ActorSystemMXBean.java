@@ -0,0 +1,35 @@
+package net.pnyxter.actor.system;
+
+import java.util.List;
+
+/**
+ * Management interface of an actor system, registered by
+ * {@link ActorSystem#registerMBean()} as
+ * {@code net.pnyxter.actor:type=ActorSystem,name=<name>}.
+ */
+public interface ActorSystemMXBean {
+
+	String getName();
+
+	int getThreadCount();
+
+	boolean isMetricsEnabled();
+
+	void setMetricsEnabled(boolean enabled);
+
+	/**
+	 * Metrics of all threads together.
+	 */
+	ActorMetrics getMetrics();
+
+	/**
+	 * Metrics of each thread that has sent to or executed actors of the
+	 * system.
+	 */
+	List<ActorMetrics> getThreadMetrics();
+
+	/**
+	 * Metrics of each actor class, recorded while metrics are enabled.
+	 */
+	List<ActorMetrics> getActorClassMetrics();
+}
@@ -0,0 +1,322 @@
+package net.pnyxter.actor.system;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * CPU topology read from {@code /sys/devices/system/cpu} and
+ * {@code /sys/devices/system/node} on Linux. Empty on other systems.
+ *
+ * Only the CPUs in the affinity mask of the process, {@code Cpus_allowed_list}
+ * in {@code /proc/self/status}, are used. Threads are pinned using
+ * {@code taskset}, as there is no thread affinity in the JDK.
+ */
+final class CpuTopology {
+
+	/**
+	 * Distances between CPUs, closest first.
+	 */
+	static final int SAME_CPU = 0;
+	static final int SAME_CORE = 1;
+	static final int SAME_CACHE = 2;
+	static final int SAME_NODE = 3;
+	static final int REMOTE = 4;
+
+	private static final Path SYS_ROOT = Paths.get("/sys/devices/system");
+	private static final Path SELF_STATUS = Paths.get("/proc/self/status");
+	private static final String ALLOWED_PREFIX = "Cpus_allowed_list:";
+
+	private static final class Holder {
+		static final CpuTopology SYSTEM = new CpuTopology(SYS_ROOT, readAllowed(SELF_STATUS));
+	}
+
+	static final class Cpu {
+		final int id;
+		final int core;
+		final int pkg;
+		final int node;
+		/**
+		 * Lowest CPU sharing the last level cache, identifying the cache.
+		 */
+		final int cache;
+		/**
+		 * Index among the SMT siblings of the core.
+		 */
+		final int sibling;
+
+		Cpu(int id, int core, int pkg, int node, int cache, int sibling) {
+			this.id = id;
+			this.core = core;
+			this.pkg = pkg;
+			this.node = node;
+			this.cache = cache;
+			this.sibling = sibling;
+		}
+
+		@Override
+		public String toString() {
+			return "cpu" + id + "(core:" + core + " package:" + pkg + " node:" + node + ")";
+		}
+	}
+
+	/**
+	 * CPUs in placement order, see {@link #getPlacement()}.
+	 */
+	private final Cpu[] placement;
+
+	/**
+	 * CPUs by id, {@code null} for offline ids.
+	 */
+	private final Cpu[] byId;
+
+	/**
+	 * Placement slots held by running threads, see {@link #acquireCpu()}.
+	 * Guarded by {@code this}.
+	 */
+	private final boolean[] taken;
+
+	CpuTopology(Path root) {
+		this(root, null);
+	}
+
+	/**
+	 * @param allowed
+	 *            sorted CPU ids to use, or {@code null} to use all online CPUs
+	 */
+	CpuTopology(Path root, int[] allowed) {
+		List<Cpu> cpus = new ArrayList<>();
+		try {
+			Path cpuRoot = root.resolve("cpu");
+			int[] nodes = readNodes(root.resolve("node"));
+			for (int id : parseList(read(cpuRoot.resolve("online")))) {
+				if (allowed != null && Arrays.binarySearch(allowed, id) < 0) {
+					continue;
+				}
+				Path cpu = cpuRoot.resolve("cpu" + id);
+				int[] siblings = parseList(read(cpu.resolve("topology/thread_siblings_list")));
+				cpus.add(new Cpu(id, readInt(cpu.resolve("topology/core_id")), readInt(cpu.resolve("topology/physical_package_id")), id < nodes.length ? nodes[id] : 0, readCache(cpu, id), Math.max(0, Arrays.binarySearch(siblings, id))));
+			}
+		} catch (IOException | RuntimeException e) {
+			// XXX: Not Linux or an unknown layout. Run without topology.
+			cpus.clear();
+		}
+
+		// Spread over physical cores before using SMT siblings and fill one
+		// node at a time so neighbouring threads share caches
+		Collections.sort(cpus, new Comparator<Cpu>() {
+			@Override
+			public int compare(Cpu a, Cpu b) {
+				if (a.sibling != b.sibling) {
+					return Integer.compare(a.sibling, b.sibling);
+				}
+				if (a.node != b.node) {
+					return Integer.compare(a.node, b.node);
+				}
+				if (a.pkg != b.pkg) {
+					return Integer.compare(a.pkg, b.pkg);
+				}
+				return Integer.compare(a.id, b.id);
+			}
+		});
+		placement = cpus.toArray(new Cpu[cpus.size()]);
+		taken = new boolean[placement.length];
+
+		int maxId = -1;
+		for (Cpu c : placement) {
+			maxId = Math.max(maxId, c.id);
+		}
+		byId = new Cpu[maxId + 1];
+		for (Cpu c : placement) {
+			byId[c.id] = c;
+		}
+	}
+
+	static CpuTopology get() {
+		return Holder.SYSTEM;
+	}
+
+	boolean isEmpty() {
+		return placement.length == 0;
+	}
+
+	/**
+	 * CPUs ordered to pin threads one by one. One CPU per physical core is
+	 * used before any SMT sibling, and CPUs in the same NUMA node are used
+	 * together.
+	 */
+	Cpu[] getPlacement() {
+		return placement.clone();
+	}
+
+	/**
+	 * Take the first free CPU in placement order for a thread to pin itself
+	 * to. The CPU is held for the threads of all actor systems using the
+	 * topology until {@link #releaseCpu(int)}, so no two threads share a CPU
+	 * and a later system starts over on the best CPUs once the threads of an
+	 * earlier one have exited.
+	 *
+	 * @return CPU id or -1 if all CPUs are taken or no topology is known
+	 */
+	synchronized int acquireCpu() {
+		for (int i = 0; i < placement.length; i++) {
+			if (!taken[i]) {
+				taken[i] = true;
+				return placement[i].id;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Give back a CPU from {@link #acquireCpu()}. Ignores -1.
+	 */
+	synchronized void releaseCpu(int cpu) {
+		for (int i = 0; i < placement.length; i++) {
+			if (placement[i].id == cpu) {
+				taken[i] = false;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Distance between two CPUs, from {@link #SAME_CPU} to {@link #REMOTE}.
+	 */
+	int distance(int a, int b) {
+		if (a == b) {
+			return SAME_CPU;
+		}
+		Cpu x = a >= 0 && a < byId.length ? byId[a] : null;
+		Cpu y = b >= 0 && b < byId.length ? byId[b] : null;
+		if (x == null || y == null) {
+			return REMOTE;
+		}
+		if (x.pkg == y.pkg && x.core == y.core) {
+			return SAME_CORE;
+		}
+		if (x.cache == y.cache) {
+			return SAME_CACHE;
+		}
+		if (x.node == y.node) {
+			return SAME_NODE;
+		}
+		return REMOTE;
+	}
+
+	/**
+	 * Pin the current thread to a CPU.
+	 *
+	 * @return {@code true} if pinned
+	 */
+	static boolean pinCurrentThread(int cpu) {
+		try {
+			// Resolves to <pid>/task/<tid> of the calling thread
+			Path self = Files.readSymbolicLink(Paths.get("/proc/thread-self"));
+			String tid = self.getFileName().toString();
+			Process taskset = new ProcessBuilder("taskset", "-p", "-c", Integer.toString(cpu), tid).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+			return taskset.waitFor() == 0;
+		} catch (IOException | UnsupportedOperationException e) {
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Parse a CPU list, like {@code 0-3,8,10-11}.
+	 */
+	static int[] parseList(String list) {
+		list = list.trim();
+		if (list.isEmpty()) {
+			return new int[0];
+		}
+		int[] ids = new int[0];
+		for (String range : list.split(",")) {
+			int dash = range.indexOf('-');
+			int first = Integer.parseInt(range.substring(0, dash < 0 ? range.length() : dash).trim());
+			int last = dash < 0 ? first : Integer.parseInt(range.substring(dash + 1).trim());
+			int n = ids.length;
+			ids = Arrays.copyOf(ids, n + last - first + 1);
+			for (int id = first; id <= last; id++) {
+				ids[n++] = id;
+			}
+		}
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * @return allowed CPU ids from a {@code /proc/<pid>/status} file, or
+	 *         {@code null} if not listed
+	 */
+	static int[] readAllowed(Path status) {
+		try {
+			for (String line : Files.readAllLines(status, StandardCharsets.US_ASCII)) {
+				if (line.startsWith(ALLOWED_PREFIX)) {
+					return parseList(line.substring(ALLOWED_PREFIX.length()));
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// XXX: Not Linux. Use all CPUs of the topology.
+		}
+		return null;
+	}
+
+	private static String read(Path file) throws IOException {
+		return new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+	}
+
+	private static int readInt(Path file) throws IOException {
+		return Integer.parseInt(read(file));
+	}
+
+	/**
+	 * @return NUMA node by CPU id, empty if there are no nodes
+	 */
+	private static int[] readNodes(Path nodeRoot) throws IOException {
+		int[] nodes = new int[0];
+		if (!Files.isDirectory(nodeRoot)) {
+			return nodes;
+		}
+		for (int node : parseList(read(nodeRoot.resolve("online")))) {
+			for (int id : parseList(read(nodeRoot.resolve("node" + node).resolve("cpulist")))) {
+				if (id >= nodes.length) {
+					nodes = Arrays.copyOf(nodes, id + 1);
+				}
+				nodes[id] = node;
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * @return lowest CPU sharing the last level cache, or the CPU itself if
+	 *         caches are not listed
+	 */
+	private static int readCache(Path cpu, int id) throws IOException {
+		Path cacheRoot = cpu.resolve("cache");
+		int level = -1;
+		int shared = id;
+		for (int i = 0; Files.isDirectory(cacheRoot.resolve("index" + i)); i++) {
+			Path index = cacheRoot.resolve("index" + i);
+			int l = readInt(index.resolve("level"));
+			if (l > level) {
+				int[] cpus = parseList(read(index.resolve("shared_cpu_list")));
+				if (cpus.length > 0) {
+					level = l;
+					shared = cpus[0];
+				}
+			}
+		}
+		return shared;
+	}
+}
@@ -0,0 +1,234 @@
+package net.pnyxter.actor.system;
+
+import java.lang.reflect.Method;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import net.pnyxter.actor.dispatcher.ActorQueue;
+import net.pnyxter.actor.dispatcher.ActorQueue.Action;
+
+/**
+ * JDK Flight Recorder events of the dispatcher, to see the actors in the same
+ * timeline as the GC, lock and I/O events of a recording.
+ *
+ * The events are disabled by default and enabled in the recording settings,
+ * for example {@code net.pnyxter.actor.Execute#enabled=true}. While disabled
+ * nothing is allocated and the cost is a check of the event type.
+ */
+final class FlightEvents {
+
+	private static final String CATEGORY = "Actor";
+
+	/**
+	 * Prefix of the inbox method bodies, see {@code ActorWeaver}.
+	 */
+	private static final String IN_ACTOR_PREFIX = "__in_actor__";
+
+	@Name("net.pnyxter.actor.Send")
+	@Label("Actor Send")
+	@Description("Action sent to the mailbox of an actor")
+	@Category(CATEGORY)
+	@Enabled(false)
+	@StackTrace(false)
+	static final class Send extends Event {
+		@Label("System")
+		String system;
+
+		@Label("Actor Class")
+		Class<?> actorClass;
+
+		@Label("Inbox Method")
+		String method;
+
+		@Label("Mailbox Depth")
+		int depth;
+	}
+
+	@Name("net.pnyxter.actor.Execute")
+	@Label("Actor Execute")
+	@Description("Action executed by an actor")
+	@Category(CATEGORY)
+	@Enabled(false)
+	@StackTrace(false)
+	static final class Execute extends Event {
+		@Label("System")
+		String system;
+
+		@Label("Actor Class")
+		Class<?> actorClass;
+
+		@Label("Inbox Method")
+		String method;
+
+		@Label("Failed")
+		boolean failed;
+	}
+
+	@Name("net.pnyxter.actor.Assign")
+	@Label("Actor Assign")
+	@Description("Actor assigned to the thread executing it")
+	@Category(CATEGORY)
+	@Enabled(false)
+	@StackTrace(false)
+	static final class Assign extends Event {
+		@Label("System")
+		String system;
+
+		@Label("Actor Class")
+		Class<?> actorClass;
+
+		@Label("Assigned Thread")
+		Thread assignedThread;
+	}
+
+	@Name("net.pnyxter.actor.Idle")
+	@Label("Actor Thread Idle")
+	@Description("Actor thread without ready actors, spinning or parked")
+	@Category(CATEGORY)
+	@Enabled(false)
+	@StackTrace(false)
+	static final class Idle extends Event {
+		@Label("System")
+		String system;
+
+		@Label("Announced")
+		@Description("Offered to be assigned new actors")
+		boolean announced;
+
+		@Label("Parks")
+		int parks;
+	}
+
+	/**
+	 * Instances only used to check if each event type is enabled.
+	 */
+	private static final Send SEND = new Send();
+	private static final Execute EXECUTE = new Execute();
+	private static final Assign ASSIGN = new Assign();
+	private static final Idle IDLE = new Idle();
+
+	/**
+	 * Inbox method name of a woven caller class, named
+	 * {@code Outer$Caller_<method>_<parameters>}. Other actions are named by
+	 * their class.
+	 */
+	private static final ClassValue<String> methodNames = new ClassValue<String>() {
+		@Override
+		protected String computeValue(Class<?> type) {
+			String name = type.getName();
+			int pos = name.lastIndexOf("$Caller_");
+			if (pos < 0) {
+				return name;
+			}
+			String caller = name.substring(pos + "$Caller_".length());
+			String method = null;
+			try {
+				// Longest match of the woven inbox method bodies, as method
+				// names may contain underscores
+				for (Method m : Class.forName(name.substring(0, pos), false, type.getClassLoader()).getDeclaredMethods()) {
+					if (!m.getName().startsWith(IN_ACTOR_PREFIX)) {
+						continue;
+					}
+					String n = m.getName().substring(IN_ACTOR_PREFIX.length());
+					if ((caller.equals(n) || caller.startsWith(n + "_")) && (method == null || n.length() > method.length())) {
+						method = n;
+					}
+				}
+			} catch (ClassNotFoundException | LinkageError e) {
+				// Fall through to the name of the caller
+			}
+			if (method == null) {
+				int end = caller.indexOf('_');
+				method = end < 0 ? caller : caller.substring(0, end);
+			}
+			return method;
+		}
+	};
+
+	private FlightEvents() {
+	}
+
+	static String methodName(Action a) {
+		return methodNames.get(a.getClass());
+	}
+
+	static String methodName(Class<?> actionClass) {
+		return methodNames.get(actionClass);
+	}
+
+	static void send(ActorSystem system, ActorQueue actor, Action a) {
+		if (SEND.isEnabled()) {
+			Send event = new Send();
+			if (event.shouldCommit()) {
+				event.system = system.getName();
+				event.actorClass = actor.getActor().getClass();
+				event.method = methodName(a);
+				event.depth = actor.size();
+				event.commit();
+			}
+		}
+	}
+
+	static boolean isExecuteEnabled() {
+		return EXECUTE.isEnabled();
+	}
+
+	static Execute beginExecute() {
+		Execute event = new Execute();
+		event.begin();
+		return event;
+	}
+
+	static void endExecute(Execute event, ActorSystem system, ActorQueue actor, Action a, boolean failed) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.system = system.getName();
+			event.actorClass = actor.getActor().getClass();
+			event.method = methodName(a);
+			event.failed = failed;
+			event.commit();
+		}
+	}
+
+	static void assign(ActorSystem system, ActorQueue actor) {
+		if (ASSIGN.isEnabled()) {
+			Assign event = new Assign();
+			if (event.shouldCommit()) {
+				event.system = system.getName();
+				event.actorClass = actor.getActor().getClass();
+				event.assignedThread = actor.getActor().getAssignedThread();
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * @return the started event or {@code null} if disabled
+	 */
+	static Idle beginIdle() {
+		if (!IDLE.isEnabled()) {
+			return null;
+		}
+		Idle event = new Idle();
+		event.begin();
+		return event;
+	}
+
+	static void endIdle(Idle event, ActorSystem system, boolean announced) {
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.system = system.getName();
+			event.announced = announced;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package net.pnyxter.actor.system;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import net.pnyxter.actor.Supervisor;
+import net.pnyxter.actor.Supervisor.Directive;
+import net.pnyxter.actor.dispatcher.ActorQueue;
+import net.pnyxter.actor.dispatcher.ActorRef;
+
+/**
+ * Routes the failure of an actor up its spawner chain, to the first spawner
+ * implementing a {@link Supervisor} for the type of the actor and of the
+ * failure. The decision is made as a priority message to the supervisor, so
+ * the supervisor state is only accessed by its own thread, and applied to the
+ * failed actor suspended meanwhile.
+ *
+ * Failures not handled by any supervisor are reported to the uncaught
+ * exception handler of the current thread and the actor resumed.
+ */
+final class Supervision {
+
+	/**
+	 * Actor and failure types handled by a supervisor class, resolved from
+	 * the type arguments of {@link Supervisor}. {@code null} for classes not
+	 * implementing it.
+	 */
+	private static final ClassValue<Class<?>[]> handledTypes = new ClassValue<Class<?>[]>() {
+		@Override
+		protected Class<?>[] computeValue(Class<?> type) {
+			if (!Supervisor.class.isAssignableFrom(type)) {
+				return null;
+			}
+			for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+				for (Type i : c.getGenericInterfaces()) {
+					if (i instanceof ParameterizedType && ((ParameterizedType) i).getRawType() == Supervisor.class) {
+						Type[] args = ((ParameterizedType) i).getActualTypeArguments();
+						return new Class<?>[] { erasure(args[0], Object.class), erasure(args[1], Throwable.class) };
+					}
+				}
+			}
+			// Raw or through another interface
+			return new Class<?>[] { Object.class, Throwable.class };
+		}
+	};
+
+	private Supervision() {
+	}
+
+	private static Class<?> erasure(Type type, Class<?> bound) {
+		if (type instanceof Class) {
+			return (Class<?>) type;
+		}
+		if (type instanceof ParameterizedType) {
+			return (Class<?>) ((ParameterizedType) type).getRawType();
+		}
+		return bound;
+	}
+
+	private static boolean handles(ActorRef supervisor, ActorRef actor, Throwable failure) {
+		Class<?>[] types = handledTypes.get(supervisor.getClass());
+		return types != null && types[0].isInstance(actor) && types[1].isInstance(failure);
+	}
+
+	/**
+	 * Send the failure of a suspended actor to the closest supervisor above
+	 * the given actor.
+	 */
+	static void route(ActorQueue from, ActorQueue failed, Throwable failure) {
+		for (ActorQueue s = from.getSpawner(); s != null; s = s.getSpawner()) {
+			if (!s.isStopped() && handles(s.getActor(), failed.getActor(), failure)) {
+				try {
+					s.addPriority(new Failure(s, failed, failure));
+					return;
+				} catch (IllegalStateException e) {
+					// XXX: System of the supervisor is shut down. Try next.
+				}
+			}
+		}
+		Thread thread = Thread.currentThread();
+		try {
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, failure);
+		} finally {
+			failed.getSystem().resume(failed, Directive.RESUME);
+		}
+	}
+
+	/**
+	 * Failure sent to a supervisor.
+	 */
+	private static final class Failure extends ActorQueue.Action {
+		private final ActorQueue supervisor;
+		private final ActorQueue failed;
+		private final Throwable failure;
+
+		Failure(ActorQueue supervisor, ActorQueue failed, Throwable failure) {
+			this.supervisor = supervisor;
+			this.failed = failed;
+			this.failure = failure;
+		}
+
+		@Override
+		public ActorRef getActorRef() {
+			return supervisor.getActor();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void execute() {
+			Directive directive;
+			try {
+				directive = ((Supervisor<Object, Throwable>) supervisor.getActor()).decide(failed.getActor(), failure);
+			} catch (Throwable t) {
+				failure.addSuppressed(t);
+				directive = Directive.ESCALATE;
+			}
+			if (directive == null || directive == Directive.ESCALATE) {
+				route(supervisor, failed, failure);
+			} else {
+				failed.getSystem().resume(failed, directive);
+			}
+		}
+	}
+}
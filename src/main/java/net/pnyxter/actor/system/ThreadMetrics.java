@@ -0,0 +1,54 @@
+package net.pnyxter.actor.system;
+
+import java.util.Arrays;
+
+/**
+ * Metrics recorded by one thread, by actor class. Only written by the owning
+ * thread, without allocation once each actor class is seen, and read by
+ * other threads without synchronization when taking snapshots.
+ */
+final class ThreadMetrics {
+
+	static final class ClassMetrics {
+		long sent = 0;
+		long executed = 0;
+		long assigned = 0;
+		long stolen = 0;
+		long rejected = 0;
+		long failures = 0;
+
+		/**
+		 * Nanos from send to execute, nanos executing and depth of the mailbox
+		 * when picked up.
+		 */
+		final Histogram queueingDelay = new Histogram();
+		final Histogram serviceTime = new Histogram();
+		final Histogram mailboxDepth = new Histogram();
+	}
+
+	/**
+	 * By actor class index, see {@link ActorSystem#getActorClassIndex(Class)}.
+	 */
+	private volatile ClassMetrics[] classes = new ClassMetrics[0];
+
+	ClassMetrics of(int classIndex) {
+		ClassMetrics[] c = classes;
+		if (classIndex < c.length) {
+			ClassMetrics m = c[classIndex];
+			if (m != null) {
+				return m;
+			}
+		} else {
+			c = Arrays.copyOf(c, Math.max(classIndex + 1, c.length * 2));
+		}
+		ClassMetrics m = new ClassMetrics();
+		c[classIndex] = m;
+		// Published to readers
+		classes = c;
+		return m;
+	}
+
+	ClassMetrics[] getClasses() {
+		return classes;
+	}
+}
@@ -0,0 +1,86 @@
+package net.pnyxter.actor.system;
+
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import net.pnyxter.actor.dispatcher.ActorQueue;
+import net.pnyxter.actor.dispatcher.ActorQueue.Action;
+
+/**
+ * Ring of the last traced hops executed by one thread. Only written by the
+ * owning thread, without allocation, and copied by other threads. Hops
+ * overwritten while copied are left out of the copy.
+ */
+final class TraceBuffer {
+
+	private static final AtomicLongFieldUpdater<TraceBuffer> writtenUpdater = AtomicLongFieldUpdater.newUpdater(TraceBuffer.class, "written");
+
+	private final String thread;
+	private final int mask;
+
+	private final long[] traceIds;
+	private final long[] spanIds;
+	private final long[] parentSpanIds;
+	private final long[] sentNanos;
+	private final long[] startNanos;
+	private final long[] endNanos;
+	private final Class<?>[] actorClasses;
+	private final Class<?>[] actionClasses;
+
+	/**
+	 * Number of hops recorded since created.
+	 */
+	private volatile long written = 0;
+
+	/**
+	 * @param size
+	 *            power of two
+	 */
+	TraceBuffer(String thread, int size) {
+		this.thread = thread;
+		this.mask = size - 1;
+		traceIds = new long[size];
+		spanIds = new long[size];
+		parentSpanIds = new long[size];
+		sentNanos = new long[size];
+		startNanos = new long[size];
+		endNanos = new long[size];
+		actorClasses = new Class<?>[size];
+		actionClasses = new Class<?>[size];
+	}
+
+	void record(ActorQueue actor, Action a, long start, long end) {
+		long w = written;
+		// Keep the writes of the hop after the publish of the previous one
+		VarHandle.storeStoreFence();
+		int i = (int) w & mask;
+		traceIds[i] = a.getTraceId();
+		spanIds[i] = a.getSpanId();
+		parentSpanIds[i] = a.getParentSpanId();
+		sentNanos[i] = a.getSentNanos();
+		startNanos[i] = start;
+		endNanos[i] = end;
+		actorClasses[i] = actor.getActor().getClass();
+		actionClasses[i] = a.getClass();
+		// Publish the hop to copying threads
+		writtenUpdater.lazySet(this, w + 1);
+	}
+
+	void copyTo(List<TraceHop> hops) {
+		long last = written;
+		long first = Math.max(0, last - mask - 1);
+		int n = hops.size();
+		for (long w = first; w < last; w++) {
+			int i = (int) w & mask;
+			hops.add(new TraceHop(traceIds[i], spanIds[i], parentSpanIds[i], thread, actorClasses[i], FlightEvents.methodName(actionClasses[i]), sentNanos[i], startNanos[i], endNanos[i]));
+		}
+		// Drop the hops the owner has overwritten meanwhile, including the
+		// slot of the hop it may be writing and has not yet published
+		VarHandle.acquireFence();
+		long overwritten = written - mask - first;
+		if (overwritten > 0) {
+			hops.subList(n, n + (int) Math.min(overwritten, hops.size() - n)).clear();
+		}
+	}
+}
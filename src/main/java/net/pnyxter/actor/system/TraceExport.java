@@ -0,0 +1,85 @@
+package net.pnyxter.actor.system;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes traced hops in the Chrome trace event format, as opened by Perfetto
+ * and {@code chrome://tracing}. Each hop is a slice on its executing thread,
+ * with a flow arrow from the send in the parent hop. Times are microseconds
+ * from the first send.
+ */
+final class TraceExport {
+
+	private TraceExport() {
+	}
+
+	static void write(List<TraceHop> hops, Writer out) throws IOException {
+		long origin = Long.MAX_VALUE;
+		Map<String, Integer> threadIds = new HashMap<>();
+		Map<Long, TraceHop> bySpan = new HashMap<>();
+		for (TraceHop h : hops) {
+			origin = Math.min(origin, h.getSentNanos());
+			bySpan.put(h.getSpanId(), h);
+			if (!threadIds.containsKey(h.getThread())) {
+				threadIds.put(h.getThread(), threadIds.size() + 1);
+			}
+		}
+
+		out.write("{\"traceEvents\":[");
+		boolean first = true;
+		for (Map.Entry<String, Integer> t : threadIds.entrySet()) {
+			first = separate(out, first);
+			out.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + t.getValue() + ",\"args\":{\"name\":");
+			string(out, t.getKey());
+			out.write("}}");
+		}
+		for (TraceHop h : hops) {
+			int tid = threadIds.get(h.getThread());
+			first = separate(out, first);
+			out.write("{\"name\":");
+			string(out, h.getActorClass().getSimpleName() + "." + h.getMethod());
+			out.write(",\"cat\":\"actor\",\"ph\":\"X\",\"pid\":1,\"tid\":" + tid);
+			out.write(",\"ts\":" + micros(h.getStartNanos() - origin) + ",\"dur\":" + micros(h.getServiceNanos()));
+			out.write(",\"args\":{\"trace\":" + h.getTraceId() + ",\"span\":" + h.getSpanId() + ",\"parent\":" + h.getParentSpanId() + ",\"queued_us\":" + micros(h.getQueueingNanos()) + "}}");
+
+			TraceHop parent = h.getParentSpanId() == 0 ? null : bySpan.get(h.getParentSpanId());
+			if (parent != null) {
+				out.write(",{\"name\":\"send\",\"cat\":\"actor\",\"ph\":\"s\",\"id\":" + h.getSpanId() + ",\"pid\":1,\"tid\":" + threadIds.get(parent.getThread()) + ",\"ts\":" + micros(h.getSentNanos() - origin) + "}");
+				out.write(",{\"name\":\"send\",\"cat\":\"actor\",\"ph\":\"f\",\"bp\":\"e\",\"id\":" + h.getSpanId() + ",\"pid\":1,\"tid\":" + tid + ",\"ts\":" + micros(h.getStartNanos() - origin) + "}");
+			}
+		}
+		out.write("]}");
+		out.flush();
+	}
+
+	private static boolean separate(Writer out, boolean first) throws IOException {
+		if (!first) {
+			out.write(",\n");
+		}
+		return false;
+	}
+
+	private static String micros(long nanos) {
+		return String.valueOf(nanos / 1000.0);
+	}
+
+	private static void string(Writer out, String s) throws IOException {
+		out.write('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.write('\\');
+				out.write(c);
+			} else if (c < 0x20) {
+				out.write(String.format("\\u%04x", (int) c));
+			} else {
+				out.write(c);
+			}
+		}
+		out.write('"');
+	}
+}
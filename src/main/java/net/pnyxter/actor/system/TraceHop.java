@@ -0,0 +1,132 @@
+package net.pnyxter.actor.system;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One traced action: sent by the hop {@link #getParentSpanId()}, queued in
+ * the mailbox of an actor and executed on a thread. The root hop of a trace
+ * has the trace id as span id and no parent.
+ *
+ * @see ActorSystem#setTraceSampling(int)
+ */
+public final class TraceHop {
+
+	private final long traceId;
+	private final long spanId;
+	private final long parentSpanId;
+	private final String thread;
+	private final Class<?> actorClass;
+	private final String method;
+	private final long sentNanos;
+	private final long startNanos;
+	private final long endNanos;
+
+	TraceHop(long traceId, long spanId, long parentSpanId, String thread, Class<?> actorClass, String method, long sentNanos, long startNanos, long endNanos) {
+		this.traceId = traceId;
+		this.spanId = spanId;
+		this.parentSpanId = parentSpanId;
+		this.thread = thread;
+		this.actorClass = actorClass;
+		this.method = method;
+		this.sentNanos = sentNanos;
+		this.startNanos = startNanos;
+		this.endNanos = endNanos;
+	}
+
+	public long getTraceId() {
+		return traceId;
+	}
+
+	public long getSpanId() {
+		return spanId;
+	}
+
+	/**
+	 * @return span of the hop that sent the action, zero for the root
+	 */
+	public long getParentSpanId() {
+		return parentSpanId;
+	}
+
+	/**
+	 * @return name of the executing thread
+	 */
+	public String getThread() {
+		return thread;
+	}
+
+	public Class<?> getActorClass() {
+		return actorClass;
+	}
+
+	/**
+	 * @return name of the inbox method
+	 */
+	public String getMethod() {
+		return method;
+	}
+
+	public long getSentNanos() {
+		return sentNanos;
+	}
+
+	public long getStartNanos() {
+		return startNanos;
+	}
+
+	public long getEndNanos() {
+		return endNanos;
+	}
+
+	/**
+	 * Nanos from the send until executed.
+	 */
+	public long getQueueingNanos() {
+		return startNanos - sentNanos;
+	}
+
+	/**
+	 * Nanos executing the action.
+	 */
+	public long getServiceNanos() {
+		return endNanos - startNanos;
+	}
+
+	/**
+	 * Hops of a trace from the root to the hop that ended last, each sent by
+	 * the one before. The hop of the path with the largest
+	 * {@link #getQueueingNanos()} is the queue that delayed the trace the
+	 * most. Hops already overwritten in the trace buffers end the path early.
+	 *
+	 * @param hops
+	 *            hops as returned by {@link ActorSystem#getTrace()}
+	 * @return the path, root first, or an empty list if the trace has no hops
+	 */
+	public static List<TraceHop> criticalPath(List<TraceHop> hops, long traceId) {
+		Map<Long, TraceHop> bySpan = new HashMap<>();
+		TraceHop last = null;
+		for (TraceHop h : hops) {
+			if (h.traceId == traceId) {
+				bySpan.put(h.spanId, h);
+				if (last == null || h.endNanos > last.endNanos) {
+					last = h;
+				}
+			}
+		}
+		List<TraceHop> path = new ArrayList<>();
+		for (TraceHop h = last; h != null; h = h.parentSpanId == 0 ? null : bySpan.get(h.parentSpanId)) {
+			path.add(h);
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	@Override
+	public String toString() {
+		return "trace:" + traceId + " span:" + spanId + " parent:" + parentSpanId + " " + actorClass.getName() + "#" + method + " on " + thread + " queued ns:" + getQueueingNanos() + " service ns:" + getServiceNanos();
+	}
+}
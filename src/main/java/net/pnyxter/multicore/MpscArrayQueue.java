@@ -0,0 +1,170 @@
+package net.pnyxter.multicore;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of multiple producers and a single follower, in a ring of
+ * slots. Nothing is allocated per message.
+ *
+ * Producers claim a slot by a compare and set of the producer sequence and
+ * then store the message with release. The follower reads slots with acquire
+ * and frees them by publishing its sequence. Producers only read the
+ * follower sequence when the cached limit is reached. The sequences
+ * are kept in one array, apart from each other and from the array header, so
+ * producers and follower do not share cache lines.
+ *
+ * A claimed slot may not be possible to poll until the producer has stored
+ * its message. In that window {@link #poll()} returns {@code null} even if
+ * messages are added after it, like {@link MpscLinkedQueue}.
+ */
+public class MpscArrayQueue<M> implements SimpleQueue<M>, MulticoreQueue.Follower<M> {
+
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+	private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+
+	/**
+	 * Longs in a cache line, with margin for adjacent line prefetching.
+	 */
+	private static final int PAD = 16;
+
+	private static final int PRODUCER = PAD;
+	private static final int PRODUCER_LIMIT = PAD + 1;
+	private static final int FOLLOWER = 2 * PAD;
+
+	private final Object[] slots;
+	private final int mask;
+
+	private final long[] sequences = new long[3 * PAD];
+
+	/**
+	 * @param capacity
+	 *            number of slots, a power of two
+	 */
+	public MpscArrayQueue(int capacity) {
+		if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		}
+		slots = new Object[capacity];
+		mask = capacity - 1;
+		sequences[PRODUCER_LIMIT] = capacity;
+	}
+
+	/**
+	 * @return {@code false} if the queue is full
+	 */
+	@Override
+	public boolean add(M message) {
+		if (message == null) {
+			throw new NullPointerException("message");
+		}
+		// Acquire, the slots below a limit cached by another producer are
+		// seen freed by the follower
+		long limit = (long) SEQUENCE.getAcquire(sequences, PRODUCER_LIMIT);
+		long p;
+		do {
+			p = (long) SEQUENCE.getOpaque(sequences, PRODUCER);
+			if (p >= limit) {
+				limit = (long) SEQUENCE.getAcquire(sequences, FOLLOWER) + slots.length;
+				if (p >= limit) {
+					return false;
+				}
+				SEQUENCE.setRelease(sequences, PRODUCER_LIMIT, limit);
+			}
+		} while (!SEQUENCE.weakCompareAndSet(sequences, PRODUCER, p, p + 1));
+
+		SLOT.setRelease(slots, (int) p & mask, message);
+		return true;
+	}
+
+	@Override
+	public Follower<M> follower() {
+		return this;
+	}
+
+	@Override
+	public M poll() {
+		long f = (long) SEQUENCE.getOpaque(sequences, FOLLOWER);
+		int index = (int) f & mask;
+		@SuppressWarnings("unchecked")
+		M message = (M) SLOT.getAcquire(slots, index);
+		if (message == null) {
+			return null;
+		}
+		SLOT.setOpaque(slots, index, null);
+		SEQUENCE.setRelease(sequences, FOLLOWER, f + 1);
+		return message;
+	}
+
+	/**
+	 * Poll the messages available, up to a limit, publishing the follower
+	 * sequence once for all of them. Only called by the follower.
+	 *
+	 * @return number of messages given to the handler
+	 */
+	public int drain(Consumer<? super M> handler, int limit) {
+		long f = (long) SEQUENCE.getOpaque(sequences, FOLLOWER);
+		int count = 0;
+		try {
+			while (count < limit) {
+				int index = (int) (f + count) & mask;
+				@SuppressWarnings("unchecked")
+				M message = (M) SLOT.getAcquire(slots, index);
+				if (message == null) {
+					break;
+				}
+				SLOT.setOpaque(slots, index, null);
+				count++;
+				handler.accept(message);
+			}
+		} finally {
+			// Also the slots taken before a failing handler
+			if (count > 0) {
+				SEQUENCE.setRelease(sequences, FOLLOWER, f + count);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Only reliable from the follower thread.
+	 */
+	public boolean isEmpty() {
+		return SLOT.getAcquire(slots, (int) (long) SEQUENCE.getOpaque(sequences, FOLLOWER) & mask) == null;
+	}
+
+	/**
+	 * Messages claimed and not polled. Approximate while producers add.
+	 */
+	public int size() {
+		long f = (long) SEQUENCE.getAcquire(sequences, FOLLOWER);
+		long p = (long) SEQUENCE.getAcquire(sequences, PRODUCER);
+		return (int) Math.max(0, Math.min(p - f, slots.length));
+	}
+
+	public int capacity() {
+		return slots.length;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("[");
+
+		long f = (long) SEQUENCE.getAcquire(sequences, FOLLOWER);
+		for (int i = 0; i < slots.length; i++) {
+			Object message = SLOT.getAcquire(slots, (int) (f + i) & mask);
+			if (message == null) {
+				break;
+			}
+			if (i > 0) {
+				buffer.append(',');
+			}
+			buffer.append(message);
+		}
+
+		buffer.append("]");
+		return buffer.toString();
+	}
+}
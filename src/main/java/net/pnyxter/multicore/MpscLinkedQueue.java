@@ -0,0 +1,112 @@
+package net.pnyxter.multicore;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Producers are only swapping the head without any retry loop and the single
+ * follower is reading without any atomic operation.
+ *
+ * An added message may not be possible to poll until the producer has linked
+ * it to the previous message. In that window {@link #poll()} returns
+ * {@code null} even if messages are added after it.
+ *
+ * The link is written with release and read with acquire, the swap of the
+ * head is the only full fence.
+ */
+public class MpscLinkedQueue<M> implements SimpleQueue<M>, MulticoreQueue.Follower<M> {
+
+	private static final VarHandle NEXT;
+
+	static {
+		try {
+			NEXT = MethodHandles.lookup().findVarHandle(Node.class, "next", Node.class);
+		} catch (Exception e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static class Node<M> {
+
+		private Node<M> next = null;
+
+		private M message;
+
+		public Node(M message) {
+			this.message = message;
+		}
+	}
+
+	private final AtomicReference<Node<M>> head;
+
+	private Node<M> cursor;
+
+	public MpscLinkedQueue() {
+		Node<M> stub = new Node<>(null);
+		head = new AtomicReference<>(stub);
+		cursor = stub;
+	}
+
+	@Override
+	public boolean add(M message) {
+		Node<M> added = new Node<>(message);
+		NEXT.setRelease(head.getAndSet(added), added);
+		return true;
+	}
+
+	@Override
+	public Follower<M> follower() {
+		return this;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <M> Node<M> next(Node<M> node) {
+		return (Node<M>) NEXT.getAcquire(node);
+	}
+
+	@Override
+	public M poll() {
+		Node<M> valueNode = next(cursor);
+		if (valueNode == null) {
+			return null;
+		}
+		M message = valueNode.message;
+		valueNode.message = null;
+		cursor = valueNode;
+		return message;
+	}
+
+	/**
+	 * Only reliable from the follower thread.
+	 */
+	public boolean isEmpty() {
+		return next(cursor) == null;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("[");
+
+		boolean first = true;
+		Node<M> c = cursor;
+		list_loop: while (c != null) {
+			c = next(c);
+
+			if (c != null) {
+				if (!first) {
+					buffer.append(',');
+				} else {
+					first = false;
+				}
+				buffer.append(c.message);
+			} else {
+				break list_loop;
+			}
+		}
+
+		buffer.append("]");
+		return buffer.toString();
+	}
+}
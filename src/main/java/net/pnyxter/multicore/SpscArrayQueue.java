@@ -0,0 +1,141 @@
+package net.pnyxter.multicore;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of a single producer and a single follower, in a ring of
+ * slots. Unlike the {@link MulticoreQueue} implementations only one thread
+ * at a time may add.
+ *
+ * The slots are the only state shared. The producer stores a message with
+ * release in a slot it sees empty, and the follower empties a slot with
+ * release after reading it with acquire. Each side keeps its own sequence,
+ * so neither reads the sequence of the other, and nothing is allocated or
+ * compared and set per message.
+ */
+public class SpscArrayQueue<M> implements MulticoreQueue.Follower<M> {
+
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+	/**
+	 * Longs in a cache line, with margin for adjacent line prefetching.
+	 */
+	private static final int PAD = 16;
+
+	private static final int PRODUCER = PAD;
+	private static final int FOLLOWER = 2 * PAD;
+
+	private final Object[] slots;
+	private final int mask;
+
+	/**
+	 * Sequence of the producer and of the follower, each only accessed by its
+	 * own thread.
+	 */
+	private final long[] sequences = new long[3 * PAD];
+
+	/**
+	 * @param capacity
+	 *            number of slots, a power of two
+	 */
+	public SpscArrayQueue(int capacity) {
+		if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		}
+		slots = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Add message last. Only called by the producer.
+	 *
+	 * @return {@code false} if the queue is full
+	 */
+	public boolean add(M message) {
+		if (message == null) {
+			throw new NullPointerException("message");
+		}
+		long p = sequences[PRODUCER];
+		int index = (int) p & mask;
+		if (SLOT.getAcquire(slots, index) != null) {
+			return false;
+		}
+		SLOT.setRelease(slots, index, message);
+		sequences[PRODUCER] = p + 1;
+		return true;
+	}
+
+	public MulticoreQueue.Follower<M> follower() {
+		return this;
+	}
+
+	@Override
+	public M poll() {
+		long f = sequences[FOLLOWER];
+		int index = (int) f & mask;
+		@SuppressWarnings("unchecked")
+		M message = (M) SLOT.getAcquire(slots, index);
+		if (message == null) {
+			return null;
+		}
+		SLOT.setRelease(slots, index, null);
+		sequences[FOLLOWER] = f + 1;
+		return message;
+	}
+
+	/**
+	 * Poll the messages available, up to a limit. Only called by the
+	 * follower.
+	 *
+	 * @return number of messages given to the handler
+	 */
+	public int drain(Consumer<? super M> handler, int limit) {
+		int count = 0;
+		while (count < limit) {
+			M message = poll();
+			if (message == null) {
+				break;
+			}
+			count++;
+			handler.accept(message);
+		}
+		return count;
+	}
+
+	/**
+	 * Only reliable from the follower thread.
+	 */
+	public boolean isEmpty() {
+		return SLOT.getAcquire(slots, (int) sequences[FOLLOWER] & mask) == null;
+	}
+
+	public int capacity() {
+		return slots.length;
+	}
+
+	/**
+	 * Only reliable from the follower thread.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("[");
+
+		long f = sequences[FOLLOWER];
+		for (int i = 0; i < slots.length; i++) {
+			Object message = SLOT.getAcquire(slots, (int) (f + i) & mask);
+			if (message == null) {
+				break;
+			}
+			if (i > 0) {
+				buffer.append(',');
+			}
+			buffer.append(message);
+		}
+
+		buffer.append("]");
+		return buffer.toString();
+	}
+}
@@ -0,0 +1,110 @@
+package net.pnyxter.multicore;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * {@link UnsafeBroadcastQueue} with the links accessed through var handles.
+ *
+ * Nodes are published by a release exchange on the link of the last node and
+ * followers read links with acquire, so no full fence is taken by either.
+ * The head is only a hint where producers start looking for the last node
+ * and new followers start.
+ */
+public class VarHandleBroadcastQueue<M> implements BroadcastQueue<M> {
+
+	private static final VarHandle NEXT;
+	private static final VarHandle HEAD;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			NEXT = lookup.findVarHandle(Node.class, "next", Node.class);
+			HEAD = lookup.findVarHandle(VarHandleBroadcastQueue.class, "head", Node.class);
+		} catch (Exception e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static class Node<M> {
+
+		private Node<M> next = null;
+
+		private final M message;
+
+		public Node(M message) {
+			this.message = message;
+		}
+	}
+
+	private Node<M> head = new Node<>(null);
+
+	@SuppressWarnings("unchecked")
+	private static <M> Node<M> next(Node<M> node) {
+		return (Node<M>) NEXT.getAcquire(node);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Node<M> head() {
+		return (Node<M>) HEAD.getAcquire(this);
+	}
+
+	@Override
+	public boolean add(M message) {
+		Node<M> added = new Node<>(message);
+
+		Node<M> cursor = head();
+
+		for (;;) {
+			@SuppressWarnings("unchecked")
+			Node<M> next = (Node<M>) NEXT.compareAndExchangeRelease(cursor, (Node<M>) null, added);
+			if (next == null) {
+				HEAD.setRelease(this, added);
+				return true;
+			}
+			cursor = next;
+		}
+	}
+
+	@Override
+	public Follower<M> follower() {
+		return new Follower<M>() {
+
+			Node<M> cursor = head();
+
+			@Override
+			public M poll() {
+				Node<M> valueNode = next(cursor);
+				if (valueNode == null) {
+					return null;
+				}
+				cursor = valueNode;
+				return valueNode.message;
+			}
+
+			@Override
+			public String toString() {
+				StringBuilder buffer = new StringBuilder();
+				buffer.append("[");
+
+				boolean first = true;
+				for (Node<M> c = next(cursor); c != null; c = next(c)) {
+					if (!first) {
+						buffer.append(',');
+					} else {
+						first = false;
+					}
+					buffer.append(c.message);
+				}
+
+				buffer.append("]");
+				return buffer.toString();
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "BroadcastQueue";
+	}
+}
@@ -0,0 +1,121 @@
+package net.pnyxter.multicore;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * {@link UnsafeLinkedQueue} with the links accessed through var handles.
+ *
+ * Nodes are published by a release exchange on the link of the last node and
+ * read with acquire. A polled node is linked to itself, so a producer
+ * starting from a stale head restarts from the cursor. The head is only a
+ * hint where producers start, a lost update of it is not retried.
+ */
+public class VarHandleLinkedQueue<M> implements SimpleQueue<M>, MulticoreQueue.Follower<M> {
+
+	private static final VarHandle NEXT;
+	private static final VarHandle HEAD;
+	private static final VarHandle CURSOR;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			NEXT = lookup.findVarHandle(Node.class, "next", Node.class);
+			HEAD = lookup.findVarHandle(VarHandleLinkedQueue.class, "head", Node.class);
+			CURSOR = lookup.findVarHandle(VarHandleLinkedQueue.class, "cursor", Node.class);
+		} catch (Exception e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static class Node<M> {
+
+		private Node<M> next;
+		private final M message;
+
+		public Node(M message) {
+			this.message = message;
+		}
+	}
+
+	private Node<M> head = new Node<>(null);
+	private Node<M> cursor = head;
+
+	@SuppressWarnings("unchecked")
+	private static <M> Node<M> next(Node<M> node) {
+		return (Node<M>) NEXT.getAcquire(node);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Node<M> cursor() {
+		return (Node<M>) CURSOR.getAcquire(this);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean add(M message) {
+		Node<M> added = new Node<>(message);
+		Node<M> h = (Node<M>) HEAD.getAcquire(this);
+		Node<M> p = h;
+
+		for (;;) {
+			Node<M> n = (Node<M>) NEXT.compareAndExchangeRelease(p, (Node<M>) null, added);
+			if (n == null) {
+				break;
+			}
+			if (p == n) {
+				p = cursor();
+			} else {
+				p = n;
+			}
+		}
+
+		HEAD.weakCompareAndSetRelease(this, h, added);
+
+		return true;
+	}
+
+	@Override
+	public Follower<M> follower() {
+		return this;
+	}
+
+	@Override
+	public M poll() {
+		for (;;) {
+			Node<M> c = cursor();
+			Node<M> valueNode = next(c);
+
+			if (valueNode == null) {
+				return null;
+			}
+
+			// Linked to itself when polled meanwhile, the cursor has moved on
+			if (valueNode != c && CURSOR.compareAndSet(this, c, valueNode)) {
+				// Only the follower moving the cursor past a node links it
+				NEXT.setRelease(c, c);
+				return valueNode.message;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("[");
+
+		boolean first = true;
+		Node<M> c = cursor();
+		for (Node<M> n = next(c); n != null && n != c; c = n, n = next(c)) {
+			if (!first) {
+				buffer.append(',');
+			} else {
+				first = false;
+			}
+			buffer.append(n.message);
+		}
+
+		buffer.append("]");
+		return buffer.toString();
+	}
+}
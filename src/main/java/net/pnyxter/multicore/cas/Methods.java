@@ -1,30 +1,20 @@
 package net.pnyxter.multicore.cas;
 
-import java.lang.reflect.Field;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
+/**
+ * Field access for woven actors. The handle is looked up with the lookup of
+ * the class declaring the field, so private fields need no opening of
+ * modules.
+ */
 public class Methods {
 
-	private static final sun.misc.Unsafe UNSAFE;
-
-	static {
+	public static VarHandle fieldHandle(MethodHandles.Lookup lookup, String fieldName, Class<?> fieldType) {
 		try {
-			Field field = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
-			field.setAccessible(true);
-			UNSAFE = (sun.misc.Unsafe) field.get(null);
+			return lookup.findVarHandle(lookup.lookupClass(), fieldName, fieldType);
 		} catch (Exception e) {
 			throw new AssertionError(e);
 		}
 	}
-
-	public static long objectFieldOffset(Class<?> objectClass, String fieldName) {
-		try {
-			return UNSAFE.objectFieldOffset(objectClass.getDeclaredField(fieldName));
-		} catch (Exception e) {
-			throw new AssertionError(e);
-		}
-	}
-
-	public static boolean compareAndSwap(Object obj, long field_offset, Object previousValue, Object newValue) {
-		return UNSAFE.compareAndSwapObject(obj, field_offset, previousValue, newValue);
-	}
 }
@@ -0,0 +1,255 @@
+package net.pnyxter.actor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.pnyxter.actor.dispatcher.ActorQueue;
+import net.pnyxter.actor.dispatcher.ActorRef;
+import net.pnyxter.actor.system.ActorSystem;
+import net.pnyxter.actor.system.ActorSystem.ProcessType;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActorFutureTest {
+
+	private ActorSystem system;
+
+	@Before
+	public void createSystem() {
+		system = new ActorSystem("future");
+		ActorSystem.setCurrent(system);
+	}
+
+	@After
+	public void shutdownSystem() {
+		ActorSystem.setCurrent(null);
+		system.shutdown();
+	}
+
+	/**
+	 * Woven by hand the same way as the agent weaves an actor with an inbox
+	 * method returning a future.
+	 */
+	private static class Echo extends HandWovenActor {
+
+		private final class Caller_echo extends ActorQueue.FutureAction {
+			private final Object value;
+
+			Caller_echo(Object value) {
+				this.value = value;
+			}
+
+			@Override
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			protected Future<Object> call() {
+				return (Future) __in_actor__echo(value);
+			}
+
+			@Override
+			public ActorRef getActorRef() {
+				return Echo.this;
+			}
+		}
+
+		Future<Object> echo(Object value) {
+			Caller_echo caller = new Caller_echo(value);
+			__in_actor__queue.add(caller);
+			return caller.getFuture();
+		}
+
+		Future<Object> __in_actor__echo(Object value) {
+			if (value instanceof RuntimeException) {
+				throw (RuntimeException) value;
+			}
+			if (value instanceof Runnable) {
+				((Runnable) value).run();
+			}
+			return ActorUtil.returnFuture(value);
+		}
+	}
+
+	private static ActorFuture.Listener<Object> record(final List<Object> values) {
+		return new ActorFuture.Listener<Object>() {
+			@Override
+			public void completed(Object value, Throwable failure) {
+				values.add(failure != null ? failure : value);
+			}
+		};
+	}
+
+	@Test
+	public void testGet() throws Exception {
+		ActorFuture<Integer> future = new ActorFuture<>();
+		Assert.assertFalse(future.isDone());
+		try {
+			future.get(1, TimeUnit.MILLISECONDS);
+			Assert.fail("Not completed");
+		} catch (TimeoutException e) {
+			// Expected
+		}
+
+		Assert.assertTrue(future.complete(7));
+		Assert.assertFalse(future.complete(8));
+		Assert.assertTrue(future.isDone());
+		Assert.assertEquals(Integer.valueOf(7), future.get());
+	}
+
+	@Test
+	public void testFailure() throws InterruptedException {
+		ActorFuture<Integer> future = new ActorFuture<>();
+		IllegalStateException failure = new IllegalStateException();
+		future.fail(failure);
+		try {
+			future.get();
+			Assert.fail("Failed");
+		} catch (ExecutionException e) {
+			Assert.assertSame(failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void testListenersRunInOrderAdded() {
+		List<Object> values = new ArrayList<>();
+		ActorFuture<Object> future = new ActorFuture<>();
+		future.addListener(record(values));
+		future.addListener(record(values));
+		Assert.assertTrue(values.isEmpty());
+
+		future.complete("v");
+		future.addListener(record(values));
+
+		Assert.assertEquals(3, values.size());
+	}
+
+	@Test
+	public void testThrowingListenerDoesNotStopOthers() {
+		final List<Throwable> reported = new ArrayList<>();
+		Thread thread = Thread.currentThread();
+		Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+		thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			@Override
+			public void uncaughtException(Thread t, Throwable e) {
+				reported.add(e);
+			}
+		});
+		try {
+			List<Object> values = new ArrayList<>();
+			ActorFuture<Object> future = new ActorFuture<>();
+			future.addListener(new ActorFuture.Listener<Object>() {
+				@Override
+				public void completed(Object value, Throwable failure) {
+					throw new IllegalStateException("listener");
+				}
+			});
+			future.addListener(record(values));
+
+			Assert.assertTrue(future.complete("v"));
+			Assert.assertEquals(1, values.size());
+			Assert.assertEquals(1, reported.size());
+		} finally {
+			thread.setUncaughtExceptionHandler(handler);
+		}
+	}
+
+	@Test
+	public void testCompleteWithPendingFuture() throws Exception {
+		ActorFuture<Object> result = new ActorFuture<>();
+		ActorFuture<Object> future = new ActorFuture<>();
+		future.completeWith(result);
+		Assert.assertFalse(future.isDone());
+
+		result.complete("v");
+		Assert.assertEquals("v", future.get());
+	}
+
+	@Test
+	public void testInboxMethodCompletesFuture() throws Exception {
+		Echo echo = new Echo();
+		Future<Object> value = echo.echo("v");
+		Future<Object> thrown = echo.echo(new IllegalStateException());
+		Assert.assertFalse(value.isDone());
+
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		Assert.assertEquals("v", value.get());
+		try {
+			thrown.get();
+			Assert.fail("Handler threw");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test
+	public void testDroppedNewestFailsFuture() throws Exception {
+		system.setDefaultMailbox(1, MailboxOverflow.DROP_NEWEST);
+		Echo echo = new Echo();
+		Future<Object> kept = echo.echo("a");
+		Future<Object> dropped = echo.echo("b");
+		Assert.assertTrue(dropped.isDone());
+
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		Assert.assertEquals("a", kept.get());
+		try {
+			dropped.get();
+			Assert.fail("Dropped");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof MailboxFullException);
+		}
+	}
+
+	@Test
+	public void testDroppedOldestFailsFuture() throws Exception {
+		system.setDefaultMailbox(1, MailboxOverflow.DROP_OLDEST);
+		Echo echo = new Echo();
+		Future<Object> dropped = echo.echo("a");
+		Future<Object> kept = echo.echo("b");
+
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		Assert.assertEquals("b", kept.get());
+		try {
+			dropped.get();
+			Assert.fail("Dropped");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof MailboxFullException);
+		}
+	}
+
+	@Test
+	public void testListenerRunAsMessageToCallingActor() throws Exception {
+		final Echo echo = new Echo();
+		final ActorFuture<Object> future = new ActorFuture<>();
+		final List<Object> executing = new ArrayList<>();
+
+		echo.echo(new Runnable() {
+			@Override
+			public void run() {
+				future.addListener(new ActorFuture.Listener<Object>() {
+					@Override
+					public void completed(Object value, Throwable failure) {
+						executing.add(ActorSystem.getExecutingActor().getActor());
+					}
+				});
+			}
+		});
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		// Completed outside the actor, listener queued to it
+		future.complete("v");
+		Assert.assertTrue(executing.isEmpty());
+		Assert.assertFalse(system.isQuiescent());
+
+		system.process(ProcessType.UNTIL_NO_WORK);
+		Assert.assertEquals(1, executing.size());
+		Assert.assertSame(echo, executing.get(0));
+	}
+}
@@ -1,10 +1,15 @@
 package net.pnyxter.actor;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import net.pnyxter.actor.dispatcher.ActorRef;
 import net.pnyxter.actor.system.ActorSystem;
-import net.pnyxter.actor.system.ActorSystem.ProcessType;
 
+import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
 public class ActorTest {
@@ -55,6 +60,7 @@ public class ActorTest {
 	public void testCallToActor() throws InterruptedException {
 
 		final CountDownLatch resultComplete = new CountDownLatch(1);
+		final AtomicLong result = new AtomicLong();
 		// ActorSystem.start(1);
 
 		final long start = System.nanoTime();
@@ -63,15 +69,65 @@ public class ActorTest {
 			@Override
 			public void sum(long sum) {
 				System.out.println("Sum: " + sum + " after " + (System.nanoTime() - start) / 1000000 + "ms");
+				result.set(sum);
 				resultComplete.countDown();
 			}
 		}).process();
 
-		ActorSystem.process(ProcessType.UNTIL_SHUTDOWN);
+		Assert.assertTrue(ActorSystem.getDefault().awaitQuiescence(1, TimeUnit.MINUTES));
 
-		resultComplete.await();
+		Assert.assertEquals(0, resultComplete.getCount());
+		Assert.assertEquals(832040, result.get());
 
-		ActorSystem.statistics();
+		ActorSystem.getDefault().statistics();
+	}
+
+	@Actor
+	public static class Wide {
+		private final StringBuilder received = new StringBuilder();
+
+		@Inbox
+		public void take(long a, double b, int c, long d) {
+			received.append(a).append(' ').append(b).append(' ').append(c).append(' ').append(d);
+		}
+	}
+
+	@Test
+	public void testWideParameters() throws InterruptedException {
+		Wide wide = new Wide();
+		wide.take(1L << 40, 0.5, 7, -3);
+
+		Assert.assertTrue(ActorSystem.getDefault().awaitQuiescence(1, TimeUnit.MINUTES));
+
+		Assert.assertEquals(1099511627776L + " 0.5 7 -3", wide.received.toString());
+	}
+
+	@Actor(mailboxCapacity = 1, overflow = MailboxOverflow.DROP_NEWEST)
+	public static class Reader {
+		@Inbox
+		public void read(Response<Integer> response) {
+			response.complete(7);
+		}
+	}
+
+	@Test
+	public void testDroppedRequestFailsResponse() throws Exception {
+		Reader reader = new Reader();
+		// Only bounded when run with the agent
+		Assume.assumeTrue((Object) reader instanceof ActorRef);
+		Response<Integer> kept = Response.create();
+		Response<Integer> dropped = Response.create();
+		// Assigned to this thread on send, so nothing runs until get
+		reader.read(kept);
+		reader.read(dropped);
+
+		try {
+			dropped.get();
+			Assert.fail("Dropped");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof MailboxFullException);
+		}
+		Assert.assertEquals(Integer.valueOf(7), kept.get(1, TimeUnit.MINUTES));
 	}
 
 }
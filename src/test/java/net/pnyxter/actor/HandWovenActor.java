@@ -0,0 +1,45 @@
+package net.pnyxter.actor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import net.pnyxter.actor.dispatcher.ActorQueue;
+import net.pnyxter.actor.dispatcher.ActorRef;
+import net.pnyxter.multicore.cas.Methods;
+
+/**
+ * The fields and {@link ActorRef} methods the agent adds to every actor,
+ * woven by hand for tests that run without the agent. Subclasses add the
+ * caller classes and inbox methods the same way as the agent weaves them.
+ */
+public abstract class HandWovenActor implements ActorRef {
+
+	protected transient final ActorQueue __in_actor__queue;
+	private transient Thread __in_actor__assigned_thread;
+
+	private static final VarHandle __in_actor__assigned_thread_handle = Methods.fieldHandle(MethodHandles.lookup(), "__in_actor__assigned_thread", Thread.class);
+
+	@SuppressWarnings("this-escape")
+	protected HandWovenActor() {
+		__in_actor__queue = ActorQueue.create(this);
+	}
+
+	public ActorQueue getQueue() {
+		return __in_actor__queue;
+	}
+
+	@Override
+	public Thread getAssignedThread() {
+		return (Thread) __in_actor__assigned_thread_handle.getAcquire(this);
+	}
+
+	@Override
+	public boolean setAssignedThread(Thread thread) {
+		return __in_actor__assigned_thread_handle.compareAndSet(this, null, thread);
+	}
+
+	@Override
+	public boolean reassignThread(Thread expected, Thread thread) {
+		return __in_actor__assigned_thread_handle.compareAndSet(this, expected, thread);
+	}
+}
@@ -0,0 +1,78 @@
+package net.pnyxter.actor;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResponseTest {
+
+	private static void completeLater(final Response<Integer> response, final Integer value) {
+		new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				response.complete(value);
+			}
+		}.start();
+	}
+
+	@Test
+	public void testCompletedByOtherThread() throws Exception {
+		Response<Integer> response = Response.create();
+		completeLater(response, 7);
+
+		Assert.assertEquals(Integer.valueOf(7), response.get());
+	}
+
+	@Test
+	public void testFailure() throws InterruptedException {
+		Response<Integer> response = Response.create();
+		IllegalStateException failure = new IllegalStateException();
+		Assert.assertTrue(response.fail(failure));
+		Assert.assertFalse(response.complete(1));
+		try {
+			response.get();
+			Assert.fail("Failed");
+		} catch (ExecutionException e) {
+			Assert.assertSame(failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void testRecycledAfterGet() throws Exception {
+		Response<Integer> response = Response.create();
+		response.complete(1);
+		response.get();
+
+		Response<Integer> next = Response.create();
+		Assert.assertSame(response, next);
+		Assert.assertFalse(next.isDone());
+
+		completeLater(next, 2);
+		Assert.assertEquals(Integer.valueOf(2), next.get(1, TimeUnit.MINUTES));
+	}
+
+	@Test
+	public void testNotRecycledAfterTimeout() throws Exception {
+		Response<Integer> response = Response.create();
+		try {
+			response.get(1, TimeUnit.MILLISECONDS);
+			Assert.fail("Not completed");
+		} catch (TimeoutException e) {
+			// Expected
+		}
+
+		// Completed late, not seen by the next request
+		response.complete(1);
+		Response<Integer> next = Response.create();
+		Assert.assertNotSame(response, next);
+		Assert.assertFalse(next.isDone());
+	}
+}
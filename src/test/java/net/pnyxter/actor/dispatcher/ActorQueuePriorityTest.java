@@ -0,0 +1,85 @@
+package net.pnyxter.actor.dispatcher;
+
+import net.pnyxter.actor.MailboxOverflow;
+import net.pnyxter.actor.system.ActorSystem;
+import net.pnyxter.actor.system.Counter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ActorQueuePriorityTest {
+
+	private static class TestAction extends ActorQueue.Action {
+		final int id;
+
+		TestAction(int id, boolean priority) {
+			this.id = id;
+			this.priority = priority;
+		}
+
+		@Override
+		public ActorRef getActorRef() {
+			return null;
+		}
+
+		@Override
+		public void execute() {
+			// Only polled
+		}
+	}
+
+	private static ActorQueue createQueue() {
+		return ActorQueue.create(new Counter(), new ActorSystem("priority"), 0, MailboxOverflow.BLOCK);
+	}
+
+	private static void post(ActorQueue queue, int id, boolean priority) {
+		queue.post(new TestAction(id, priority));
+	}
+
+	private static void assertPolled(ActorQueue queue, int... ids) {
+		for (int id : ids) {
+			Assert.assertEquals(id, ((TestAction) queue.poll()).id);
+		}
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void testPriorityBeforeNormal() {
+		ActorQueue queue = createQueue();
+
+		post(queue, 1, false);
+		post(queue, 2, false);
+		post(queue, 3, true);
+		post(queue, 4, false);
+		post(queue, 5, true);
+
+		assertPolled(queue, 3, 5, 1, 2, 4);
+	}
+
+	@Test
+	public void testPriorityPassesTakenActions() {
+		ActorQueue queue = createQueue();
+
+		post(queue, 1, false);
+		post(queue, 2, false);
+		post(queue, 3, false);
+		Assert.assertEquals(1, ((TestAction) queue.poll()).id);
+
+		post(queue, 4, true);
+
+		assertPolled(queue, 4, 2, 3);
+	}
+
+	@Test
+	public void testMixedChainKeepsOrderInLanes() {
+		ActorQueue queue = createQueue();
+
+		ActorQueue.Action chain = null;
+		for (int i = 1; i <= 6; i++) {
+			chain = ActorQueue.queue(chain, new TestAction(i, i % 3 == 0));
+		}
+		queue.post(chain);
+
+		assertPolled(queue, 3, 6, 1, 2, 4, 5);
+	}
+}
@@ -0,0 +1,177 @@
+package net.pnyxter.actor.dispatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.pnyxter.actor.dispatcher.TimingWheel.Timeout;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimingWheelTest {
+
+	private static final long TICK = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private static class CountingTask implements Runnable {
+		final AtomicInteger runs = new AtomicInteger();
+
+		@Override
+		public void run() {
+			runs.incrementAndGet();
+		}
+	}
+
+	private static TimingWheel createWheel(int buckets) {
+		return new TimingWheel(Thread.currentThread(), buckets, TICK);
+	}
+
+	@Test
+	public void testTimeoutNotRunBeforeDeadline() {
+		TimingWheel wheel = createWheel(64);
+		CountingTask task = new CountingTask();
+		long now = System.nanoTime();
+		Timeout timeout = wheel.add(task, 10 * TICK, 0);
+
+		wheel.advance(now + 5 * TICK);
+		Assert.assertEquals(0, task.runs.get());
+		Assert.assertEquals(1, wheel.size());
+
+		Assert.assertEquals(1, wheel.advance(now + 12 * TICK));
+		Assert.assertEquals(1, task.runs.get());
+		Assert.assertTrue(timeout.isExpired());
+		Assert.assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testTimeoutBeyondOneTurn() {
+		TimingWheel wheel = createWheel(8);
+		CountingTask task = new CountingTask();
+		long now = System.nanoTime();
+		wheel.add(task, 20 * TICK, 0);
+
+		// Passes the bucket of the timeout twice before the deadline
+		for (int t = 1; t < 20; t++) {
+			wheel.advance(now + t * TICK);
+		}
+		Assert.assertEquals(0, task.runs.get());
+
+		wheel.advance(now + 22 * TICK);
+		Assert.assertEquals(1, task.runs.get());
+	}
+
+	@Test
+	public void testLongGapRunsAllExpired() {
+		TimingWheel wheel = createWheel(8);
+		CountingTask task = new CountingTask();
+		long now = System.nanoTime();
+		for (int i = 0; i < 100; i++) {
+			wheel.add(task, i * TICK, 0);
+		}
+		wheel.add(task, 1000 * TICK, 0);
+
+		Assert.assertEquals(100, wheel.advance(now + 200 * TICK));
+		Assert.assertEquals(1, wheel.size());
+	}
+
+	@Test
+	public void testCancel() {
+		TimingWheel wheel = createWheel(64);
+		CountingTask task = new CountingTask();
+		long now = System.nanoTime();
+		Timeout timeout = wheel.add(task, 5 * TICK, 0);
+
+		Assert.assertTrue(timeout.cancel());
+		Assert.assertFalse(timeout.cancel());
+		Assert.assertTrue(timeout.isCancelled());
+		Assert.assertEquals(0, wheel.size());
+
+		wheel.advance(now + 10 * TICK);
+		Assert.assertEquals(0, task.runs.get());
+	}
+
+	@Test
+	public void testPeriodic() {
+		TimingWheel wheel = createWheel(64);
+		CountingTask task = new CountingTask();
+		long now = System.nanoTime();
+		Timeout timeout = wheel.add(task, 10 * TICK, 10 * TICK);
+
+		for (int t = 1; t <= 55; t++) {
+			wheel.advance(now + t * TICK);
+		}
+		Assert.assertEquals(5, task.runs.get());
+		Assert.assertFalse(timeout.isExpired());
+
+		timeout.cancel();
+		wheel.advance(now + 100 * TICK);
+		Assert.assertEquals(5, task.runs.get());
+	}
+
+	@Test
+	public void testThrowingTaskReported() {
+		final List<Throwable> reported = new ArrayList<>();
+		Thread thread = Thread.currentThread();
+		Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+		thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			@Override
+			public void uncaughtException(Thread t, Throwable e) {
+				reported.add(e);
+			}
+		});
+		try {
+			TimingWheel wheel = createWheel(64);
+			CountingTask task = new CountingTask();
+			Runnable failing = new Runnable() {
+				@Override
+				public void run() {
+					throw new IllegalStateException("timer");
+				}
+			};
+			long now = System.nanoTime();
+			wheel.add(task, 10 * TICK, 0);
+			Timeout periodic = wheel.add(failing, 10 * TICK, 10 * TICK);
+			wheel.add(task, 10 * TICK, 0);
+
+			Assert.assertEquals(3, wheel.advance(now + 12 * TICK));
+			Assert.assertEquals(2, task.runs.get());
+			Assert.assertEquals(1, reported.size());
+			Assert.assertTrue(reported.get(0) instanceof IllegalStateException);
+
+			// Relinked after throwing
+			Assert.assertEquals(1, wheel.size());
+			Assert.assertEquals(1, wheel.advance(now + 22 * TICK));
+			Assert.assertEquals(2, reported.size());
+			Assert.assertTrue(periodic.cancel());
+		} finally {
+			thread.setUncaughtExceptionHandler(handler);
+		}
+	}
+
+	@Test
+	public void testAddAndCancelFromOtherThread() throws InterruptedException {
+		final TimingWheel wheel = createWheel(64);
+		final CountingTask task = new CountingTask();
+		final Timeout[] timeouts = new Timeout[2];
+		long now = System.nanoTime();
+
+		Thread other = new Thread() {
+			@Override
+			public void run() {
+				timeouts[0] = wheel.add(task, 5 * TICK, 0);
+				timeouts[1] = wheel.add(task, 5 * TICK, 0);
+				timeouts[1].cancel();
+			}
+		};
+		other.start();
+		other.join();
+
+		Assert.assertTrue(wheel.hasTimeouts());
+		wheel.advance(now + 10 * TICK);
+		Assert.assertEquals(1, task.runs.get());
+		Assert.assertTrue(timeouts[0].isExpired());
+		Assert.assertTrue(timeouts[1].isCancelled());
+		Assert.assertFalse(wheel.hasTimeouts());
+	}
+}
@@ -0,0 +1,60 @@
+package net.pnyxter.actor.system;
+
+import java.lang.management.ManagementFactory;
+
+import net.pnyxter.actor.dispatcher.ActorQueue;
+import net.pnyxter.actor.system.ActorSystem.ProcessType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ActorSystemAllocationTest {
+
+	private static final int N_WARMUP = 200000;
+	private static final int N_MSG = 100000;
+
+	/**
+	 * Allowed allocation for the measured sends, covering the odd allocation
+	 * by the measuring itself.
+	 */
+	private static final long MAX_ALLOCATED_BYTES = 4096;
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+
+	private static void sendAndProcess(Counter counter, ActorQueue.Action[] actions) throws InterruptedException {
+		for (ActorQueue.Action a : actions) {
+			counter.getQueue().add(a);
+			if (a == actions[actions.length - 1] || counter.getQueue().size() > 10) {
+				ActorSystem.getDefault().process(ProcessType.UNTIL_NO_WORK);
+			}
+		}
+	}
+
+	private static ActorQueue.Action[] createActions(Counter counter, int n) {
+		ActorQueue.Action[] actions = new ActorQueue.Action[n];
+		for (int i = 0; i < n; i++) {
+			actions[i] = counter.new Caller_increase();
+		}
+		return actions;
+	}
+
+	@Test
+	public void testLocalSendDoesNotAllocate() throws InterruptedException {
+		Counter counter = new Counter();
+
+		sendAndProcess(counter, createActions(counter, N_WARMUP));
+		Assert.assertEquals(N_WARMUP, counter.count);
+
+		// Messages are the only allowed allocation so create them in advance
+		ActorQueue.Action[] actions = createActions(counter, N_MSG);
+
+		long before = allocatedBytes();
+		sendAndProcess(counter, actions);
+		long allocated = allocatedBytes() - before;
+
+		Assert.assertEquals(N_WARMUP + N_MSG, counter.count);
+		Assert.assertTrue("Allocated " + allocated + " bytes for " + N_MSG + " local sends", allocated < MAX_ALLOCATED_BYTES);
+	}
+}
@@ -0,0 +1,95 @@
+package net.pnyxter.actor.system;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.pnyxter.actor.system.ActorSystem.ProcessType;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActorSystemAssignmentTest {
+
+	private static final int N_MSG = 1000;
+
+	private ActorSystem system;
+
+	@Before
+	public void createSystem() {
+		system = new ActorSystem("assignment");
+		ActorSystem.setCurrent(system);
+	}
+
+	@After
+	public void shutdownSystem() {
+		ActorSystem.setCurrent(null);
+		system.shutdown();
+	}
+
+	@Test
+	public void testQueuedActionsPostedWhenAssignedByOtherThread() throws InterruptedException {
+		final Counter counter = new Counter();
+		final CountDownLatch sent = new CountDownLatch(1);
+
+		// Waiting in the mailbox until the actor is assigned
+		Thread sender = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < N_MSG; i++) {
+					counter.increase();
+				}
+				sent.countDown();
+				while (counter.getAssignedThread() == null) {
+					Thread.yield();
+				}
+				try {
+					system.process(ProcessType.TRY_SINGLE);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		sender.start();
+		sent.await();
+
+		// Assigned to this thread, not the sender
+		while (counter.getAssignedThread() == null) {
+			system.process(ProcessType.TRY_SINGLE);
+		}
+		sender.join();
+
+		Assert.assertFalse(system.isQuiescent());
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		Assert.assertEquals(N_MSG, counter.count);
+		Assert.assertTrue(system.isQuiescent());
+	}
+
+	@Test
+	public void testConcurrentSendsWhileAssigning() throws InterruptedException {
+		final Counter counter = new Counter();
+
+		Thread[] senders = new Thread[4];
+		for (int t = 0; t < senders.length; t++) {
+			senders[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < N_MSG; i++) {
+						counter.increase();
+					}
+				}
+			};
+			senders[t].start();
+		}
+
+		system.process(ProcessType.TRY_SINGLE);
+		for (Thread sender : senders) {
+			sender.join();
+		}
+
+		Assert.assertTrue(system.awaitQuiescence(1, TimeUnit.MINUTES));
+		Assert.assertEquals(senders.length * N_MSG, counter.count);
+	}
+}
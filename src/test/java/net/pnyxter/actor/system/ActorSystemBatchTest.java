@@ -0,0 +1,79 @@
+package net.pnyxter.actor.system;
+
+import net.pnyxter.actor.system.ActorSystem.ProcessType;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActorSystemBatchTest {
+
+	private static final int N_MSG = 1000;
+
+	private ActorSystem system;
+
+	@Before
+	public void createSystem() {
+		system = new ActorSystem("batch");
+		ActorSystem.setCurrent(system);
+	}
+
+	@After
+	public void shutdownSystem() {
+		ActorSystem.setCurrent(null);
+		system.shutdown();
+	}
+
+	@Test
+	public void testBatchIsLimitedByCount() {
+		Counter counter = new Counter();
+		for (int i = 0; i < N_MSG; i++) {
+			counter.increase();
+		}
+
+		Assert.assertEquals(100, system.processBatch(100, 0));
+		Assert.assertEquals(100, counter.count);
+
+		Assert.assertEquals(N_MSG - 100, system.processBatch(Integer.MAX_VALUE, 0));
+		Assert.assertEquals(N_MSG, counter.count);
+
+		Assert.assertEquals(0, system.processBatch(Integer.MAX_VALUE, 0));
+	}
+
+	@Test
+	public void testBatchDrainsSeveralActors() throws InterruptedException {
+		Counter[] counters = new Counter[10];
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = new Counter();
+		}
+		for (int i = 0; i < N_MSG; i++) {
+			counters[i % counters.length].increase();
+		}
+
+		int drained = 0;
+		while (system.process(ProcessType.BATCH)) {
+			drained++;
+		}
+
+		Assert.assertTrue("Batches: " + drained, drained <= 1 + N_MSG / 1024);
+		for (Counter c : counters) {
+			Assert.assertEquals(N_MSG / counters.length, c.count);
+		}
+	}
+
+	@Test
+	public void testBatchStopsOnTimeBudget() {
+		Counter counter = new Counter();
+		for (int i = 0; i < N_MSG; i++) {
+			counter.increase();
+		}
+
+		// Budget is checked after each actor so at least one run is executed
+		int drained = system.processBatch(Integer.MAX_VALUE, 1);
+		Assert.assertEquals(system.getThroughput(), drained);
+
+		system.processBatch(Integer.MAX_VALUE, 0);
+		Assert.assertEquals(N_MSG, counter.count);
+	}
+}
@@ -0,0 +1,121 @@
+package net.pnyxter.actor.system;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActorSystemChannelsTest {
+
+	private static final int N_THREADS = 4;
+	private static final int N_MSG = 10000;
+
+	private ActorSystem system;
+
+	@Before
+	public void createSystem() {
+		system = new ActorSystem("channels");
+		system.setThreadChannels(true);
+		system.start(N_THREADS);
+	}
+
+	@After
+	public void shutdownSystem() {
+		system.shutdown();
+	}
+
+	/**
+	 * Run the task on the actor threads, as many times as given, and wait
+	 * until it has run. Pending timers are not part of quiescence.
+	 */
+	private void runOnThreads(final Runnable task, int n) throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(n);
+		for (int i = 0; i < n; i++) {
+			system.schedule(new Runnable() {
+				@Override
+				public void run() {
+					task.run();
+					done.countDown();
+				}
+			}, 0, TimeUnit.MILLISECONDS);
+		}
+		Assert.assertTrue(done.await(1, TimeUnit.MINUTES));
+	}
+
+	/**
+	 * Create counters on the actor threads and wait until they are assigned.
+	 */
+	private Counter[] createCounters(int n) throws InterruptedException {
+		final Counter[] counters = new Counter[n];
+		final AtomicInteger created = new AtomicInteger();
+		runOnThreads(new Runnable() {
+			@Override
+			public void run() {
+				counters[created.getAndIncrement()] = new Counter();
+			}
+		}, n);
+		for (Counter c : counters) {
+			while (c.getAssignedThread() == null) {
+				Thread.yield();
+			}
+		}
+		return counters;
+	}
+
+	@Test
+	public void testSendsBetweenThreads() throws InterruptedException {
+		final Counter[] counters = createCounters(N_THREADS);
+
+		runOnThreads(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < N_MSG; i++) {
+					for (Counter c : counters) {
+						c.increase();
+					}
+				}
+			}
+		}, N_THREADS);
+
+		Assert.assertTrue(system.awaitQuiescence(1, TimeUnit.MINUTES));
+		for (Counter c : counters) {
+			Assert.assertEquals(N_THREADS * N_MSG, c.count);
+		}
+	}
+
+	@Test
+	public void testPingPongWakesParkedThread() throws InterruptedException {
+		Counter[] counters = createCounters(2);
+		final Counter ping = counters[0];
+		final Counter pong = counters[1];
+		ping.onIncrease = new Runnable() {
+			@Override
+			public void run() {
+				if (ping.count < N_MSG) {
+					pong.increase();
+				}
+			}
+		};
+		pong.onIncrease = new Runnable() {
+			@Override
+			public void run() {
+				ping.increase();
+			}
+		};
+
+		runOnThreads(new Runnable() {
+			@Override
+			public void run() {
+				ping.increase();
+			}
+		}, 1);
+
+		Assert.assertTrue(system.awaitQuiescence(1, TimeUnit.MINUTES));
+		Assert.assertEquals(N_MSG, ping.count);
+		Assert.assertEquals(N_MSG - 1, pong.count);
+	}
+}
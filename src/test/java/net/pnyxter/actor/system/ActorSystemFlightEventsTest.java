@@ -0,0 +1,97 @@
+package net.pnyxter.actor.system;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import net.pnyxter.actor.system.ActorSystem.ProcessType;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActorSystemFlightEventsTest {
+
+	private static final int N_MSG = 10;
+
+	private ActorSystem system;
+
+	@Before
+	public void createSystem() {
+		system = new ActorSystem("flight");
+		ActorSystem.setCurrent(system);
+	}
+
+	@After
+	public void shutdownSystem() {
+		ActorSystem.setCurrent(null);
+		system.shutdown();
+	}
+
+	private static int count(List<RecordedEvent> events, String type) {
+		int n = 0;
+		for (RecordedEvent e : events) {
+			if (e.getEventType().getName().equals(type)) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	private List<RecordedEvent> record(boolean enabled) throws IOException, InterruptedException {
+		File file = File.createTempFile("actor", ".jfr");
+		try {
+			try (Recording recording = new Recording()) {
+				if (enabled) {
+					recording.enable("net.pnyxter.actor.Send");
+					recording.enable("net.pnyxter.actor.Execute");
+					recording.enable("net.pnyxter.actor.Assign");
+				}
+				recording.start();
+
+				Counter counter = new Counter();
+				for (int i = 0; i < N_MSG; i++) {
+					counter.increase();
+				}
+				system.process(ProcessType.UNTIL_NO_WORK);
+
+				recording.stop();
+				recording.dump(file.toPath());
+			}
+			return RecordingFile.readAllEvents(file.toPath());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testEvents() throws IOException, InterruptedException {
+		List<RecordedEvent> events = record(true);
+
+		Assert.assertEquals(N_MSG, count(events, "net.pnyxter.actor.Send"));
+		Assert.assertEquals(N_MSG, count(events, "net.pnyxter.actor.Execute"));
+		Assert.assertEquals(1, count(events, "net.pnyxter.actor.Assign"));
+
+		for (RecordedEvent e : events) {
+			if (e.getEventType().getName().equals("net.pnyxter.actor.Execute")) {
+				Assert.assertEquals("flight", e.getString("system"));
+				Assert.assertEquals(Counter.class.getName(), e.getClass("actorClass").getName());
+				Assert.assertEquals("increase", e.getString("method"));
+				Assert.assertFalse(e.getBoolean("failed"));
+			}
+		}
+	}
+
+	@Test
+	public void testDisabledByDefault() throws IOException, InterruptedException {
+		List<RecordedEvent> events = record(false);
+
+		Assert.assertEquals(0, count(events, "net.pnyxter.actor.Send"));
+		Assert.assertEquals(0, count(events, "net.pnyxter.actor.Execute"));
+	}
+}
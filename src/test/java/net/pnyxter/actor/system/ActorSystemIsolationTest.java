@@ -0,0 +1,115 @@
+package net.pnyxter.actor.system;
+
+import java.util.concurrent.TimeUnit;
+
+import net.pnyxter.actor.system.ActorSystem.ProcessType;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActorSystemIsolationTest {
+
+	private static final int N_MSG = 1000;
+
+	private ActorSystem first;
+	private ActorSystem second;
+
+	@Before
+	public void createSystems() {
+		first = new ActorSystem("first");
+		second = new ActorSystem("second");
+	}
+
+	@After
+	public void shutdownSystems() {
+		ActorSystem.setCurrent(null);
+		first.shutdown();
+		second.shutdown();
+	}
+
+	private static Counter createCounter(ActorSystem system) {
+		ActorSystem previous = ActorSystem.setCurrent(system);
+		try {
+			return new Counter();
+		} finally {
+			ActorSystem.setCurrent(previous);
+		}
+	}
+
+	@Test
+	public void testActorIsBoundToCurrentSystem() {
+		Assert.assertSame(ActorSystem.getDefault(), ActorSystem.current());
+
+		Assert.assertSame(first, createCounter(first).getQueue().getSystem());
+		Assert.assertSame(second, createCounter(second).getQueue().getSystem());
+		Assert.assertSame(ActorSystem.getDefault(), new Counter().getQueue().getSystem());
+	}
+
+	@Test
+	public void testBacklogStaysInOwnSystem() throws InterruptedException {
+		Counter busy = createCounter(first);
+		Counter idle = createCounter(second);
+
+		for (int i = 0; i < N_MSG; i++) {
+			busy.increase();
+		}
+		idle.increase();
+
+		Assert.assertFalse(first.isQuiescent());
+		Assert.assertFalse(second.isQuiescent());
+
+		second.process(ProcessType.UNTIL_NO_WORK);
+
+		Assert.assertEquals(1, idle.count);
+		Assert.assertEquals(0, busy.count);
+		Assert.assertTrue(second.isQuiescent());
+		Assert.assertFalse(first.isQuiescent());
+
+		Assert.assertTrue(first.awaitQuiescence(1, TimeUnit.MINUTES));
+		Assert.assertEquals(N_MSG, busy.count);
+	}
+
+	@Test
+	public void testShutdownOnlyStopsOwnSystem() {
+		Counter stopped = createCounter(first);
+		Counter running = createCounter(second);
+
+		first.shutdown();
+
+		try {
+			stopped.increase();
+			Assert.fail("Sent to shut down system");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+
+		running.increase();
+		Assert.assertEquals(1, second.processBatch(Integer.MAX_VALUE, 0));
+		Assert.assertEquals(1, running.count);
+	}
+
+	@Test
+	public void testSendAcrossSystems() throws InterruptedException {
+		second.start(1);
+		final Counter counter = createCounter(second);
+
+		first.start(1);
+		final Counter sender = createCounter(first);
+		sender.onIncrease = new Runnable() {
+			@Override
+			public void run() {
+				counter.increase();
+			}
+		};
+		for (int i = 0; i < N_MSG; i++) {
+			sender.increase();
+		}
+
+		Assert.assertTrue(first.awaitQuiescence(1, TimeUnit.MINUTES));
+		Assert.assertTrue(second.awaitQuiescence(1, TimeUnit.MINUTES));
+		Assert.assertEquals(N_MSG, sender.count);
+		Assert.assertEquals(N_MSG, counter.count);
+	}
+}
@@ -0,0 +1,127 @@
+package net.pnyxter.actor.system;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.pnyxter.actor.MailboxFullException;
+import net.pnyxter.actor.MailboxOverflow;
+import net.pnyxter.actor.system.ActorSystem.ProcessType;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActorSystemMailboxTest {
+
+	private static final int CAPACITY = 4;
+	private static final int N_MSG = 10;
+	private static final int N_SENDERS = 8;
+
+	private ActorSystem system;
+
+	@Before
+	public void createSystem() {
+		system = new ActorSystem("mailbox");
+		ActorSystem.setCurrent(system);
+	}
+
+	@After
+	public void shutdownSystem() {
+		ActorSystem.setCurrent(null);
+		system.shutdown();
+	}
+
+	private Counter createCounter(MailboxOverflow overflow) {
+		system.setDefaultMailbox(CAPACITY, overflow);
+		return new Counter();
+	}
+
+	private static int send(Counter counter, int n) {
+		int failed = 0;
+		for (int i = 0; i < n; i++) {
+			try {
+				counter.increase();
+			} catch (MailboxFullException e) {
+				failed++;
+			}
+		}
+		return failed;
+	}
+
+	@Test
+	public void testDropNewest() throws InterruptedException {
+		Counter counter = createCounter(MailboxOverflow.DROP_NEWEST);
+
+		send(counter, N_MSG);
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		Assert.assertEquals(CAPACITY, counter.count);
+		Assert.assertEquals(N_MSG - CAPACITY, counter.getQueue().getRejectedCount());
+	}
+
+	@Test
+	public void testDropOldest() throws InterruptedException {
+		Counter counter = createCounter(MailboxOverflow.DROP_OLDEST);
+
+		send(counter, N_MSG);
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		Assert.assertEquals(CAPACITY, counter.count);
+		Assert.assertEquals(N_MSG - CAPACITY, counter.getQueue().getRejectedCount());
+		Assert.assertEquals(0, counter.getQueue().size());
+	}
+
+	@Test
+	public void testFail() throws InterruptedException {
+		Counter counter = createCounter(MailboxOverflow.FAIL);
+
+		Assert.assertEquals(N_MSG - CAPACITY, send(counter, N_MSG));
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		Assert.assertEquals(CAPACITY, counter.count);
+	}
+
+	@Test
+	public void testConcurrentSendersKeepBound() throws InterruptedException {
+		final Counter counter = createCounter(MailboxOverflow.FAIL);
+
+		// Assigned to this thread, so the senders only fill the mailbox
+		send(counter, 1);
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		final AtomicInteger failed = new AtomicInteger();
+		Thread[] senders = new Thread[N_SENDERS];
+		for (int i = 0; i < N_SENDERS; i++) {
+			senders[i] = new Thread("SENDER-" + i) {
+				@Override
+				public void run() {
+					failed.addAndGet(send(counter, N_MSG));
+				}
+			};
+		}
+		for (Thread t : senders) {
+			t.start();
+		}
+		for (Thread t : senders) {
+			t.join();
+		}
+
+		Assert.assertEquals(CAPACITY, counter.getQueue().size());
+		Assert.assertEquals(N_SENDERS * N_MSG - CAPACITY, failed.get());
+
+		system.process(ProcessType.UNTIL_NO_WORK);
+		Assert.assertEquals(1 + CAPACITY, counter.count);
+	}
+
+	@Test
+	public void testBlockProcessesWhileWaiting() throws InterruptedException {
+		Counter counter = createCounter(MailboxOverflow.BLOCK);
+
+		send(counter, N_MSG);
+		Assert.assertTrue(counter.getQueue().size() <= CAPACITY);
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		Assert.assertEquals(N_MSG, counter.count);
+		Assert.assertEquals(0, counter.getQueue().getRejectedCount());
+	}
+}
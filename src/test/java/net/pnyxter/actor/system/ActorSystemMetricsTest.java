@@ -0,0 +1,99 @@
+package net.pnyxter.actor.system;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import net.pnyxter.actor.system.ActorSystem.ProcessType;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActorSystemMetricsTest {
+
+	private static final int N_MSG = 100;
+
+	private ActorSystem system;
+
+	@Before
+	public void createSystem() {
+		system = new ActorSystem("metrics");
+		ActorSystem.setCurrent(system);
+	}
+
+	@After
+	public void shutdownSystem() {
+		ActorSystem.setCurrent(null);
+		system.shutdown();
+	}
+
+	private static ActorMetrics find(List<ActorMetrics> metrics, String name) {
+		for (ActorMetrics m : metrics) {
+			if (m.getName().equals(name)) {
+				return m;
+			}
+		}
+		throw new AssertionError("No metrics for " + name + " in " + metrics);
+	}
+
+	@Test
+	public void testRecordedByActorClass() throws InterruptedException {
+		system.setMetricsEnabled(true);
+		Counter counter = new Counter();
+		for (int i = 0; i < N_MSG; i++) {
+			counter.increase();
+		}
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		ActorMetrics m = find(system.getActorClassMetrics(), Counter.class.getName());
+		Assert.assertEquals(N_MSG, m.getSentCount());
+		Assert.assertEquals(N_MSG, m.getExecutedCount());
+		Assert.assertEquals(1, m.getAssignedCount());
+		Assert.assertEquals(N_MSG, m.getQueueingDelay().getCount());
+		Assert.assertEquals(N_MSG, m.getServiceTime().getCount());
+		Assert.assertTrue(m.getMailboxDepth().getMax() >= system.getThroughput());
+
+		ActorMetrics thread = find(system.getThreadMetrics(), Thread.currentThread().getName());
+		Assert.assertEquals(N_MSG, thread.getExecutedCount());
+		Assert.assertEquals(N_MSG, thread.getServiceTime().getCount());
+		Assert.assertEquals(N_MSG, system.getMetrics().getExecutedCount());
+	}
+
+	@Test
+	public void testOnlyThreadCountersWhenDisabled() throws InterruptedException {
+		Counter counter = new Counter();
+		counter.increase();
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		Assert.assertTrue(system.getActorClassMetrics().isEmpty());
+		ActorMetrics total = system.getMetrics();
+		Assert.assertEquals(1, total.getSentCount());
+		Assert.assertEquals(1, total.getExecutedCount());
+		Assert.assertEquals(0, total.getServiceTime().getCount());
+	}
+
+	@Test
+	public void testMBean() throws Exception {
+		ObjectName name = system.registerMBean();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		server.setAttribute(name, new javax.management.Attribute("MetricsEnabled", true));
+		Assert.assertTrue(system.isMetricsEnabled());
+
+		Counter counter = new Counter();
+		counter.increase();
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		CompositeData metrics = (CompositeData) server.getAttribute(name, "Metrics");
+		Assert.assertEquals(1L, metrics.get("executedCount"));
+		Assert.assertEquals(1L, ((CompositeData) metrics.get("serviceTime")).get("count"));
+
+		system.shutdown();
+		Assert.assertFalse(server.isRegistered(name));
+	}
+}
@@ -0,0 +1,257 @@
+package net.pnyxter.actor.system;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.pnyxter.actor.ActorFuture;
+import net.pnyxter.actor.Supervisor;
+import net.pnyxter.actor.dispatcher.ActorQueue;
+import net.pnyxter.actor.dispatcher.ActorRef;
+import net.pnyxter.actor.system.ActorSystem.ProcessType;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActorSystemSupervisionTest {
+
+	private ActorSystem system;
+
+	@Before
+	public void createSystem() {
+		system = new ActorSystem("supervision");
+		ActorSystem.setCurrent(system);
+	}
+
+	@After
+	public void shutdownSystem() {
+		ActorSystem.setCurrent(null);
+		system.shutdown();
+	}
+
+	private static class Supervising extends Counter implements Supervisor<Counter, RuntimeException> {
+		final List<Counter> failed = new ArrayList<>();
+		Directive directive = Directive.RESUME;
+
+		@Override
+		public boolean actorFailure(Counter actor, RuntimeException exception) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Directive decide(Counter actor, RuntimeException exception) {
+			failed.add(actor);
+			return directive;
+		}
+	}
+
+	private static class IoSupervising extends Counter implements Supervisor<Counter, IOException> {
+		int failures = 0;
+
+		@Override
+		public boolean actorFailure(Counter actor, IOException exception) {
+			failures++;
+			return true;
+		}
+	}
+
+	/**
+	 * Create an actor spawned by the given actor.
+	 */
+	private <C extends Counter> C spawn(Counter spawner, final Class<C> type) throws InterruptedException {
+		final List<C> spawned = new ArrayList<>();
+		spawner.onIncrease = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					spawned.add(type.getDeclaredConstructor().newInstance());
+				} catch (ReflectiveOperationException e) {
+					throw new AssertionError(e);
+				}
+			}
+		};
+		spawner.increase();
+		system.process(ProcessType.UNTIL_NO_WORK);
+		spawner.onIncrease = null;
+		return spawned.get(0);
+	}
+
+	/**
+	 * Fail the next increase.
+	 */
+	private static void failNext(final Counter counter) {
+		counter.onIncrease = new Runnable() {
+			@Override
+			public void run() {
+				counter.onIncrease = null;
+				throw new IllegalStateException("Expected failure");
+			}
+		};
+	}
+
+	/**
+	 * Send three actions failing on the first.
+	 */
+	private void failFirstOfThree(Counter counter) throws InterruptedException {
+		failNext(counter);
+		counter.increase();
+		counter.increase();
+		counter.increase();
+		system.process(ProcessType.UNTIL_NO_WORK);
+	}
+
+	@Test
+	public void testUnhandledFailureResumes() throws InterruptedException {
+		final List<Throwable> reported = new ArrayList<>();
+		Thread thread = Thread.currentThread();
+		Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+		thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			@Override
+			public void uncaughtException(Thread t, Throwable e) {
+				reported.add(e);
+			}
+		});
+		try {
+			Counter counter = new Counter();
+
+			failFirstOfThree(counter);
+
+			Assert.assertEquals(1, reported.size());
+			Assert.assertTrue(reported.get(0) instanceof IllegalStateException);
+			Assert.assertEquals(3, counter.count);
+			Assert.assertTrue(system.isQuiescent());
+		} finally {
+			thread.setUncaughtExceptionHandler(handler);
+		}
+	}
+
+	@Test
+	public void testResume() throws InterruptedException {
+		Supervising supervisor = new Supervising();
+		Counter child = spawn(supervisor, Counter.class);
+
+		failFirstOfThree(child);
+
+		Assert.assertEquals(1, supervisor.failed.size());
+		Assert.assertSame(child, supervisor.failed.get(0));
+		Assert.assertEquals(3, child.count);
+		Assert.assertTrue(system.isQuiescent());
+	}
+
+	@Test
+	public void testRestartDiscardsWaitingActions() throws InterruptedException {
+		Supervising supervisor = new Supervising();
+		supervisor.directive = Supervisor.Directive.RESTART;
+		Counter child = spawn(supervisor, Counter.class);
+
+		failFirstOfThree(child);
+		Assert.assertEquals(1, child.count);
+
+		child.increase();
+		system.process(ProcessType.UNTIL_NO_WORK);
+		Assert.assertEquals(2, child.count);
+		Assert.assertTrue(system.isQuiescent());
+	}
+
+	/**
+	 * Send an increase as an action with a future.
+	 */
+	private static Future<Object> increaseWithFuture(final Counter counter) {
+		ActorQueue.FutureAction a = new ActorQueue.FutureAction() {
+			@Override
+			protected Future<Object> call() {
+				counter.__in_actor__increase();
+				return ActorFuture.completed(null);
+			}
+
+			@Override
+			public ActorRef getActorRef() {
+				return counter;
+			}
+		};
+		counter.getQueue().add(a);
+		return a.getFuture();
+	}
+
+	@Test
+	public void testDiscardedActionsFailFutures() throws InterruptedException {
+		Supervising supervisor = new Supervising();
+		supervisor.directive = Supervisor.Directive.RESTART;
+		Counter child = spawn(supervisor, Counter.class);
+
+		failNext(child);
+		Future<Object> failed = increaseWithFuture(child);
+		Future<Object> discarded = increaseWithFuture(child);
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		// Failed future actions are supervised as well
+		Assert.assertSame(child, supervisor.failed.get(0));
+		try {
+			failed.get();
+			Assert.fail("Handler threw");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		try {
+			discarded.get();
+			Assert.fail("Discarded on restart");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof CancellationException);
+		}
+		Assert.assertEquals(1, child.count);
+	}
+
+	@Test
+	public void testStopRejectsLaterActions() throws InterruptedException {
+		Supervising supervisor = new Supervising();
+		supervisor.directive = Supervisor.Directive.STOP;
+		Counter child = spawn(supervisor, Counter.class);
+
+		failFirstOfThree(child);
+		try {
+			child.increase();
+			Assert.fail("Stopped");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		Assert.assertEquals(1, child.count);
+		Assert.assertTrue(child.getQueue().isStopped());
+		Assert.assertTrue(system.isQuiescent());
+	}
+
+	@Test
+	public void testEscalatedToSupervisorOfSupervisor() throws InterruptedException {
+		Supervising top = new Supervising();
+		top.directive = Supervisor.Directive.STOP;
+		Supervising middle = spawn(top, Supervising.class);
+		middle.directive = Supervisor.Directive.ESCALATE;
+		Counter child = spawn(middle, Counter.class);
+
+		failFirstOfThree(child);
+
+		Assert.assertSame(child, middle.failed.get(0));
+		Assert.assertSame(child, top.failed.get(0));
+		Assert.assertEquals(1, child.count);
+		Assert.assertTrue(child.getQueue().isStopped());
+	}
+
+	@Test
+	public void testSupervisorOfOtherFailureSkipped() throws InterruptedException {
+		Supervising top = new Supervising();
+		IoSupervising io = spawn(top, IoSupervising.class);
+		Counter child = spawn(io, Counter.class);
+
+		failFirstOfThree(child);
+
+		Assert.assertEquals(0, io.failures);
+		Assert.assertSame(child, top.failed.get(0));
+		Assert.assertEquals(3, child.count);
+	}
+}
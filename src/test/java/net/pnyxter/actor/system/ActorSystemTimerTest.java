@@ -0,0 +1,119 @@
+package net.pnyxter.actor.system;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.pnyxter.actor.dispatcher.TimingWheel.Timeout;
+import net.pnyxter.actor.system.ActorSystem.ProcessType;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActorSystemTimerTest {
+
+	private ActorSystem system;
+
+	@Before
+	public void createSystem() {
+		system = new ActorSystem("timer");
+		ActorSystem.setCurrent(system);
+	}
+
+	@After
+	public void shutdownSystem() {
+		ActorSystem.setCurrent(null);
+		system.shutdown();
+	}
+
+	private static Runnable increase(final Counter counter) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				counter.increase();
+			}
+		};
+	}
+
+	private static Runnable countDown(final CountDownLatch latch) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		};
+	}
+
+	/**
+	 * Wait while processing, since actors created by the test thread are
+	 * assigned to it.
+	 */
+	private void await(CountDownLatch latch) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+		while (!latch.await(1, TimeUnit.MILLISECONDS)) {
+			system.process(ProcessType.TRY_SINGLE);
+			Assert.assertTrue(System.nanoTime() - deadline < 0);
+		}
+	}
+
+	@Test
+	public void testDelayedSendOnActorThread() throws InterruptedException {
+		system.start(1);
+		Counter counter = new Counter();
+		CountDownLatch done = new CountDownLatch(1);
+		counter.onIncrease = countDown(done);
+
+		long start = System.nanoTime();
+		system.schedule(increase(counter), 20, TimeUnit.MILLISECONDS);
+
+		await(done);
+		Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+	}
+
+	@Test
+	public void testPeriodicUntilCancelled() throws InterruptedException {
+		system.start(1);
+		Counter counter = new Counter();
+		CountDownLatch done = new CountDownLatch(5);
+		counter.onIncrease = countDown(done);
+
+		Timeout timeout = system.scheduleAtFixedRate(increase(counter), 1, 1, TimeUnit.MILLISECONDS);
+
+		await(done);
+		Assert.assertTrue(timeout.cancel());
+		Assert.assertTrue(system.awaitQuiescence(1, TimeUnit.MINUTES));
+		long count = counter.count;
+
+		Thread.sleep(20);
+		Assert.assertTrue(system.awaitQuiescence(1, TimeUnit.MINUTES));
+		Assert.assertEquals(count, counter.count);
+	}
+
+	@Test
+	public void testTimeoutRunWhileProcessingWithoutActorThreads() throws InterruptedException {
+		Counter counter = new Counter();
+		Timeout timeout = system.schedule(increase(counter), 5, TimeUnit.MILLISECONDS);
+		Timeout cancelled = system.schedule(increase(counter), 5, TimeUnit.MILLISECONDS);
+		cancelled.cancel();
+
+		while (!timeout.isExpired()) {
+			system.process(ProcessType.TRY_SINGLE);
+		}
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		Assert.assertEquals(1, counter.count);
+	}
+
+	@Test
+	public void testDelayedSendOnVirtualThreads() throws InterruptedException {
+		system.startVirtual();
+		Counter counter = new Counter();
+		CountDownLatch done = new CountDownLatch(1);
+		counter.onIncrease = countDown(done);
+
+		system.schedule(increase(counter), 5, TimeUnit.MILLISECONDS);
+
+		Assert.assertTrue(done.await(1, TimeUnit.MINUTES));
+	}
+}
@@ -0,0 +1,115 @@
+package net.pnyxter.actor.system;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import net.pnyxter.actor.system.ActorSystem.ProcessType;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActorSystemTracingTest {
+
+	private ActorSystem system;
+
+	@Before
+	public void createSystem() {
+		system = new ActorSystem("tracing");
+		ActorSystem.setCurrent(system);
+	}
+
+	@After
+	public void shutdownSystem() {
+		ActorSystem.setCurrent(null);
+		system.shutdown();
+	}
+
+	/**
+	 * First counter forwards each increase to the second.
+	 */
+	private Counter[] chain() {
+		final Counter first = new Counter();
+		final Counter second = new Counter();
+		first.onIncrease = new Runnable() {
+			@Override
+			public void run() {
+				second.increase();
+			}
+		};
+		return new Counter[] { first, second };
+	}
+
+	@Test
+	public void testFollowsChain() throws InterruptedException {
+		system.setTraceSampling(1);
+		Counter[] chain = chain();
+		chain[0].increase();
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		List<TraceHop> hops = system.getTrace();
+		Assert.assertEquals(2, hops.size());
+		TraceHop root = hops.get(0);
+		TraceHop hop = hops.get(1);
+
+		Assert.assertEquals(root.getTraceId(), root.getSpanId());
+		Assert.assertEquals(0, root.getParentSpanId());
+		Assert.assertEquals(root.getTraceId(), hop.getTraceId());
+		Assert.assertEquals(root.getSpanId(), hop.getParentSpanId());
+		Assert.assertNotEquals(root.getSpanId(), hop.getSpanId());
+		Assert.assertEquals(Counter.class, hop.getActorClass());
+		Assert.assertEquals("increase", hop.getMethod());
+		Assert.assertEquals(Thread.currentThread().getName(), hop.getThread());
+		Assert.assertTrue(hop.getSentNanos() >= root.getStartNanos() && hop.getSentNanos() <= root.getEndNanos());
+		Assert.assertTrue(hop.getQueueingNanos() >= 0 && hop.getServiceNanos() >= 0);
+
+		List<TraceHop> path = TraceHop.criticalPath(hops, root.getTraceId());
+		Assert.assertEquals(2, path.size());
+		Assert.assertSame(root, path.get(0));
+		Assert.assertSame(hop, path.get(1));
+	}
+
+	@Test
+	public void testSampling() throws InterruptedException {
+		system.setTraceSampling(4);
+		Counter counter = new Counter();
+		for (int i = 0; i < 8; i++) {
+			counter.increase();
+		}
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		List<TraceHop> hops = system.getTrace();
+		Assert.assertEquals(2, hops.size());
+		Assert.assertNotEquals(hops.get(0).getTraceId(), hops.get(1).getTraceId());
+		Assert.assertEquals(1, TraceHop.criticalPath(hops, hops.get(1).getTraceId()).size());
+	}
+
+	@Test
+	public void testNotTracedByDefault() throws InterruptedException {
+		Counter[] chain = chain();
+		chain[0].increase();
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		Assert.assertTrue(system.getTrace().isEmpty());
+		Assert.assertEquals(2, chain[0].count + chain[1].count);
+	}
+
+	@Test
+	public void testExport() throws IOException, InterruptedException {
+		system.setTraceSampling(1);
+		chain()[0].increase();
+		system.process(ProcessType.UNTIL_NO_WORK);
+
+		StringWriter out = new StringWriter();
+		system.exportTrace(out);
+		String json = out.toString();
+
+		Assert.assertTrue(json, json.startsWith("{\"traceEvents\":["));
+		Assert.assertTrue(json, json.endsWith("]}"));
+		Assert.assertTrue(json, json.contains("\"name\":\"Counter.increase\""));
+		Assert.assertTrue(json, json.contains("\"ph\":\"s\""));
+		Assert.assertTrue(json, json.contains("\"ph\":\"f\""));
+	}
+}
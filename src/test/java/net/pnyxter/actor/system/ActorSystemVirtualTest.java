@@ -0,0 +1,94 @@
+package net.pnyxter.actor.system;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActorSystemVirtualTest {
+
+	private static final int N_ACTORS = 100;
+	private static final int N_MSG = 100;
+	private static final long BLOCK_MILLIS = 50;
+
+	private ActorSystem system;
+
+	@Before
+	public void createSystem() {
+		system = new ActorSystem("virtual");
+		system.startVirtual();
+		ActorSystem.setCurrent(system);
+	}
+
+	@After
+	public void shutdownSystem() {
+		ActorSystem.setCurrent(null);
+		system.shutdown();
+	}
+
+	@Test
+	public void testActionsOfActorAreSerial() throws InterruptedException {
+		final AtomicInteger overlaps = new AtomicInteger();
+		Counter[] counters = new Counter[N_ACTORS];
+		for (int i = 0; i < counters.length; i++) {
+			final AtomicInteger executing = new AtomicInteger();
+			counters[i] = new Counter();
+			counters[i].onIncrease = new Runnable() {
+				@Override
+				public void run() {
+					if (executing.incrementAndGet() != 1) {
+						overlaps.incrementAndGet();
+					}
+					Thread.yield();
+					executing.decrementAndGet();
+				}
+			};
+		}
+
+		for (int m = 0; m < N_MSG; m++) {
+			for (Counter c : counters) {
+				c.increase();
+			}
+		}
+
+		Assert.assertTrue(system.awaitQuiescence(1, TimeUnit.MINUTES));
+		Assert.assertEquals(0, overlaps.get());
+		for (Counter c : counters) {
+			Assert.assertEquals(N_MSG, c.count);
+		}
+	}
+
+	@Test
+	public void testBlockingActorsDoNotBlockEachOther() throws InterruptedException {
+		Counter[] counters = new Counter[N_ACTORS];
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = new Counter();
+			counters[i].onIncrease = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(BLOCK_MILLIS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			};
+		}
+
+		long start = System.nanoTime();
+		for (Counter c : counters) {
+			c.increase();
+		}
+		Assert.assertTrue(system.awaitQuiescence(1, TimeUnit.MINUTES));
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// Executed one at a time it would take N_ACTORS * BLOCK_MILLIS
+		Assert.assertTrue("Elapsed " + elapsedMillis + "ms", elapsedMillis < N_ACTORS * BLOCK_MILLIS / 4);
+		for (Counter c : counters) {
+			Assert.assertEquals(1, c.count);
+		}
+	}
+}
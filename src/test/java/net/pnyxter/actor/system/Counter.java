@@ -0,0 +1,43 @@
+package net.pnyxter.actor.system;
+
+import net.pnyxter.actor.HandWovenActor;
+import net.pnyxter.actor.dispatcher.ActorQueue;
+import net.pnyxter.actor.dispatcher.ActorRef;
+
+/**
+ * Woven by hand the same way as the agent weaves an actor with a single
+ * inbox method.
+ */
+public class Counter extends HandWovenActor {
+
+	final class Caller_increase extends ActorQueue.Action {
+
+		@Override
+		public void execute() {
+			__in_actor__increase();
+		}
+
+		@Override
+		public ActorRef getActorRef() {
+			return Counter.this;
+		}
+	}
+
+	long count = 0;
+
+	/**
+	 * Called on each increase, if set.
+	 */
+	Runnable onIncrease = null;
+
+	void increase() {
+		__in_actor__queue.add(new Caller_increase());
+	}
+
+	void __in_actor__increase() {
+		count++;
+		if (onIncrease != null) {
+			onIncrease.run();
+		}
+	}
+}
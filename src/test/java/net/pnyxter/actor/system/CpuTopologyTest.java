@@ -0,0 +1,126 @@
+package net.pnyxter.actor.system;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CpuTopologyTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static void write(Path file, String content) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.write(file, (content + "\n").getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Two packages, one NUMA node each, with two cores of two SMT siblings.
+	 * Siblings are numbered after all cores, as on most Intel machines.
+	 */
+	private Path writeDualSocket() throws IOException {
+		Path root = folder.getRoot().toPath().resolve("system");
+		write(root.resolve("cpu/online"), "0-7");
+		for (int id = 0; id < 8; id++) {
+			int pkg = (id / 2) % 2;
+			int core = id % 2;
+			int first = pkg * 2 + core;
+			Path cpu = root.resolve("cpu/cpu" + id);
+			write(cpu.resolve("topology/core_id"), Integer.toString(core));
+			write(cpu.resolve("topology/physical_package_id"), Integer.toString(pkg));
+			write(cpu.resolve("topology/thread_siblings_list"), first + "," + (first + 4));
+			write(cpu.resolve("cache/index0/level"), "1");
+			write(cpu.resolve("cache/index0/shared_cpu_list"), first + "," + (first + 4));
+			write(cpu.resolve("cache/index1/level"), "3");
+			write(cpu.resolve("cache/index1/shared_cpu_list"), pkg == 0 ? "0-1,4-5" : "2-3,6-7");
+		}
+		write(root.resolve("node/online"), "0-1");
+		write(root.resolve("node/node0/cpulist"), "0-1,4-5");
+		write(root.resolve("node/node1/cpulist"), "2-3,6-7");
+		return root;
+	}
+
+	private CpuTopology createDualSocket() throws IOException {
+		return new CpuTopology(writeDualSocket());
+	}
+
+	@Test
+	public void testParseList() {
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 3, 8, 10, 11 }, CpuTopology.parseList("0-3,8,10-11"));
+		Assert.assertArrayEquals(new int[] { 5 }, CpuTopology.parseList("5\n"));
+		Assert.assertArrayEquals(new int[0], CpuTopology.parseList(""));
+	}
+
+	@Test
+	public void testPlacementUsesCoresBeforeSiblings() throws IOException {
+		CpuTopology topology = createDualSocket();
+
+		int[] cpus = new int[8];
+		for (int i = 0; i < cpus.length; i++) {
+			cpus[i] = topology.acquireCpu();
+		}
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5, 6, 7 }, cpus);
+		// No sharing of CPUs
+		Assert.assertEquals(-1, topology.acquireCpu());
+	}
+
+	@Test
+	public void testPlacementKeepsToAllowedCpus() throws IOException {
+		Path status = folder.getRoot().toPath().resolve("status");
+		write(status, "Name:\tjava\nCpus_allowed:\t4c\nCpus_allowed_list:\t2-3,6\nMems_allowed_list:\t0-1");
+		CpuTopology topology = new CpuTopology(writeDualSocket(), CpuTopology.readAllowed(status));
+
+		Assert.assertArrayEquals(new int[] { 2, 3, 6 }, CpuTopology.readAllowed(status));
+		Assert.assertEquals(3, topology.getPlacement().length);
+		Assert.assertEquals(2, topology.acquireCpu());
+		Assert.assertEquals(3, topology.acquireCpu());
+		Assert.assertEquals(6, topology.acquireCpu());
+		Assert.assertEquals(-1, topology.acquireCpu());
+	}
+
+	@Test
+	public void testReleasedCpuIsReused() throws IOException {
+		CpuTopology topology = createDualSocket();
+
+		Assert.assertEquals(0, topology.acquireCpu());
+		Assert.assertEquals(1, topology.acquireCpu());
+		Assert.assertEquals(2, topology.acquireCpu());
+		topology.releaseCpu(1);
+		topology.releaseCpu(-1);
+
+		// Lowest free slot first, not where the last thread stopped
+		Assert.assertEquals(1, topology.acquireCpu());
+		Assert.assertEquals(3, topology.acquireCpu());
+	}
+
+	@Test
+	public void testMissingStatusAllowsAll() {
+		Assert.assertNull(CpuTopology.readAllowed(folder.getRoot().toPath().resolve("missing")));
+	}
+
+	@Test
+	public void testDistance() throws IOException {
+		CpuTopology topology = createDualSocket();
+
+		Assert.assertEquals(CpuTopology.SAME_CPU, topology.distance(1, 1));
+		Assert.assertEquals(CpuTopology.SAME_CORE, topology.distance(0, 4));
+		Assert.assertEquals(CpuTopology.SAME_CACHE, topology.distance(0, 5));
+		Assert.assertEquals(CpuTopology.REMOTE, topology.distance(0, 2));
+		Assert.assertEquals(CpuTopology.REMOTE, topology.distance(0, -1));
+	}
+
+	@Test
+	public void testMissingTopologyIsEmpty() {
+		CpuTopology topology = new CpuTopology(new File(folder.getRoot(), "missing").toPath());
+
+		Assert.assertTrue(topology.isEmpty());
+		Assert.assertEquals(-1, topology.acquireCpu());
+	}
+}
@@ -0,0 +1,48 @@
+package net.pnyxter.actor.system;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HistogramTest {
+
+	@Test
+	public void testBucketsCoverValues() {
+		for (long v = 0; v < 100000; v++) {
+			int index = Histogram.index(v);
+			Assert.assertTrue(v + " above bucket " + index, v <= Histogram.highest(index));
+			if (index > 0) {
+				Assert.assertTrue(v + " in bucket before " + index, v > Histogram.highest(index - 1));
+			}
+		}
+	}
+
+	@Test
+	public void testPercentiles() {
+		Histogram h = new Histogram();
+		for (int v = 1; v <= 1000; v++) {
+			h.record(v);
+		}
+
+		Assert.assertEquals(1000, h.getCount());
+		Assert.assertEquals(1000, h.getMax());
+		Assert.assertEquals(500.5, h.getMean(), 0.001);
+		Assert.assertTrue(h.getMedian() >= 500 && h.getMedian() <= 500 * 1.125);
+		Assert.assertTrue(h.getP99() >= 990 && h.getP99() <= 1000);
+		Assert.assertEquals(1000, h.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testAdd() {
+		Histogram a = new Histogram();
+		Histogram b = new Histogram();
+		a.record(10);
+		b.record(1L << 50);
+
+		a.add(b);
+
+		Assert.assertEquals(2, a.getCount());
+		Assert.assertEquals(1L << 50, a.getMax());
+		Assert.assertEquals(10, a.getMedian());
+		Assert.assertEquals(1L << 50, a.getValueAtPercentile(100));
+	}
+}
@@ -27,6 +27,11 @@ public class BroadcastQueueTest {
 		testBasic(new UnsafeBroadcastQueue<Integer>());
 	}
 
+	@Test
+	public void testBasicVarHandle() {
+		testBasic(new VarHandleBroadcastQueue<Integer>());
+	}
+
 	private void testBasic(final BroadcastQueue<Integer> queue) {
 		Follower<Integer> f = queue.follower();
 		Follower<Integer> f2 = queue.follower();
@@ -68,6 +73,11 @@ public class BroadcastQueueTest {
 		testPerf(new UnsafeBroadcastQueue<Integer>());
 	}
 
+	@Test
+	public void testPerfVarHandle() throws InterruptedException {
+		testPerf(new VarHandleBroadcastQueue<Integer>());
+	}
+
 	private void testPerf(final BroadcastQueue<Integer> queue) throws InterruptedException {
 
 		final CountDownLatch done = new CountDownLatch(N_THREADS);
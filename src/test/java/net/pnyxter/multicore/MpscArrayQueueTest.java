@@ -0,0 +1,97 @@
+package net.pnyxter.multicore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MpscArrayQueueTest {
+
+	@Test
+	public void testCapacityPowerOfTwo() {
+		try {
+			new MpscArrayQueue<Integer>(6);
+			Assert.fail("Capacity not a power of two");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testFull() {
+		MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(4);
+
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 4; i++) {
+				Assert.assertTrue(queue.add(i));
+			}
+			Assert.assertFalse(queue.add(4));
+			Assert.assertEquals(4, queue.size());
+
+			Assert.assertEquals(0, queue.poll().intValue());
+			Assert.assertTrue(queue.add(4));
+			Assert.assertFalse(queue.add(5));
+
+			for (int i = 1; i <= 4; i++) {
+				Assert.assertEquals(i, queue.poll().intValue());
+			}
+			Assert.assertNull(queue.poll());
+			Assert.assertTrue(queue.isEmpty());
+		}
+	}
+
+	@Test
+	public void testDrain() {
+		MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(8);
+		for (int i = 0; i < 6; i++) {
+			queue.add(i);
+		}
+
+		final List<Integer> drained = new ArrayList<>();
+		Consumer<Integer> handler = new Consumer<Integer>() {
+			@Override
+			public void accept(Integer message) {
+				drained.add(message);
+			}
+		};
+
+		Assert.assertEquals(4, queue.drain(handler, 4));
+		Assert.assertEquals(2, queue.drain(handler, 4));
+		Assert.assertEquals(0, queue.drain(handler, 4));
+		Assert.assertEquals("[0, 1, 2, 3, 4, 5]", drained.toString());
+
+		// Drained slots are free again
+		for (int i = 0; i < 8; i++) {
+			Assert.assertTrue(queue.add(i));
+		}
+		Assert.assertFalse(queue.add(8));
+	}
+
+	@Test
+	public void testDrainFailing() {
+		MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(4);
+		for (int i = 0; i < 3; i++) {
+			queue.add(i);
+		}
+
+		try {
+			queue.drain(new Consumer<Integer>() {
+				@Override
+				public void accept(Integer message) {
+					if (message == 1) {
+						throw new IllegalStateException();
+					}
+				}
+			}, 4);
+			Assert.fail("Handler failed");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+
+		// The failed message is taken, the rest is left
+		Assert.assertEquals(2, queue.poll().intValue());
+		Assert.assertNull(queue.poll());
+	}
+}
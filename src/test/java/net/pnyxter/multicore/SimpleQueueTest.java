@@ -23,6 +23,21 @@ public class SimpleQueueTest {
 		testBasic(new UnsafeLinkedQueue<Integer>());
 	}
 
+	@Test
+	public void testBasicLinkedVarHandle() {
+		testBasic(new VarHandleLinkedQueue<Integer>());
+	}
+
+	@Test
+	public void testBasicMpscLinked() {
+		testBasic(new MpscLinkedQueue<Integer>());
+	}
+
+	@Test
+	public void testBasicMpscArray() {
+		testBasic(new MpscArrayQueue<Integer>(8));
+	}
+
 	private void testBasic(final SimpleQueue<Integer> queue) {
 		Follower<Integer> f = queue.follower();
 		Follower<Integer> f2 = queue.follower();
@@ -53,6 +68,61 @@ public class SimpleQueueTest {
 		testPerf(new UnsafeLinkedQueue<Integer>());
 	}
 
+	@Test
+	public void testPerfLinkedVarHandle() throws InterruptedException {
+		testPerf(new VarHandleLinkedQueue<Integer>());
+	}
+
+	@Test
+	public void testSingleFollowerMpscLinked() throws InterruptedException {
+		testSingleFollower(new MpscLinkedQueue<Integer>());
+	}
+
+	@Test
+	public void testSingleFollowerMpscArray() throws InterruptedException {
+		testSingleFollower(new MpscArrayQueue<Integer>(1024));
+	}
+
+	private void testSingleFollower(final SimpleQueue<Integer> queue) throws InterruptedException {
+		final int messages = N_MSG / 10;
+
+		for (int i = 0; i < N_THREADS; i++) {
+			final int adder = i;
+			new Thread("ADDER-" + i) {
+				@Override
+				public void run() {
+					for (int j = 0; j < messages / N_THREADS; j++) {
+						// Bounded queues refuse when full
+						while (!queue.add(adder * messages + j)) {
+							Thread.yield();
+						}
+					}
+				}
+			}.start();
+		}
+
+		// Order from each adder must be kept
+		int[] last = new int[N_THREADS];
+		for (int i = 0; i < N_THREADS; i++) {
+			last[i] = i * messages - 1;
+		}
+
+		Follower<Integer> f = queue.follower();
+		for (int received = 0; received < messages;) {
+			Integer polled = f.poll();
+			if (polled != null) {
+				int adder = polled / messages;
+				Assert.assertEquals(last[adder] + 1, polled.intValue());
+				last[adder] = polled;
+				received++;
+			} else {
+				Thread.yield();
+			}
+		}
+
+		Assert.assertNull(f.poll());
+	}
+
 	private void testPerf(final SimpleQueue<Integer> queue) throws InterruptedException {
 
 		final CountDownLatch done = new CountDownLatch(N_THREADS);
@@ -0,0 +1,86 @@
+package net.pnyxter.multicore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpscArrayQueueTest {
+
+	private static final int N_MSG = 10000000;
+
+	@Test
+	public void testFull() {
+		SpscArrayQueue<Integer> queue = new SpscArrayQueue<>(4);
+
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 4; i++) {
+				Assert.assertTrue(queue.add(i));
+			}
+			Assert.assertFalse(queue.add(4));
+
+			Assert.assertEquals(0, queue.poll().intValue());
+			Assert.assertTrue(queue.add(4));
+			Assert.assertFalse(queue.add(5));
+
+			for (int i = 1; i <= 4; i++) {
+				Assert.assertEquals(i, queue.poll().intValue());
+			}
+			Assert.assertNull(queue.poll());
+			Assert.assertTrue(queue.isEmpty());
+		}
+	}
+
+	@Test
+	public void testDrain() {
+		SpscArrayQueue<Integer> queue = new SpscArrayQueue<>(8);
+		for (int i = 0; i < 6; i++) {
+			queue.add(i);
+		}
+
+		final List<Integer> drained = new ArrayList<>();
+		Consumer<Integer> handler = new Consumer<Integer>() {
+			@Override
+			public void accept(Integer message) {
+				drained.add(message);
+			}
+		};
+
+		Assert.assertEquals(4, queue.drain(handler, 4));
+		Assert.assertEquals(2, queue.drain(handler, 4));
+		Assert.assertEquals(0, queue.drain(handler, 4));
+		Assert.assertEquals("[0, 1, 2, 3, 4, 5]", drained.toString());
+	}
+
+	@Test
+	public void testOrderBetweenThreads() throws InterruptedException {
+		final SpscArrayQueue<Integer> queue = new SpscArrayQueue<>(1024);
+
+		Thread adder = new Thread("ADDER") {
+			@Override
+			public void run() {
+				for (int i = 0; i < N_MSG; i++) {
+					while (!queue.add(i)) {
+						Thread.yield();
+					}
+				}
+			}
+		};
+		adder.start();
+
+		for (int expected = 0; expected < N_MSG;) {
+			Integer polled = queue.poll();
+			if (polled != null) {
+				Assert.assertEquals(expected, polled.intValue());
+				expected++;
+			} else {
+				Thread.yield();
+			}
+		}
+		adder.join();
+
+		Assert.assertNull(queue.poll());
+	}
+}